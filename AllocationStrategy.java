@@ -0,0 +1,79 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+//a memory placement policy that ContigousMemoryAllocator delegates to
+public interface AllocationStrategy {
+
+	//name of the policy as shown to the user
+	String getName();
+
+	//hooks the strategy up to the memory it places requests in and rebuilds any index it keeps from the current holes
+	void reset(ContigousMemoryAllocator memory);
+
+	//returns the base address a request of the given size should be placed at, or -1 if no hole can take it
+	int place(int size);
+
+	//the same for a request that will hold its memory for the given number of ticks, -1 if that is not known
+	//only strategies that place by lifetime need more than place(size)
+	default int place(int size, int lifetime) {
+		return place(size);
+	}
+
+	//how many KB are actually reserved for a request of the given size
+	default int reserve(int size) {
+		return size;
+	}
+
+	//called after a free partition has been added to the memory (or has grown or shrunk)
+	default void holeAdded(Partition hole) {
+	}
+
+	//called before a free partition is resized or merged away
+	default void holeRemoved(Partition hole) {
+	}
+
+	//called after the allocated range [base, base + length) has been freed and merged
+	default void released(int base, int length) {
+	}
+
+	//called after compaction moved allocated partitions, the hole notifications have already been sent
+	default void compacted(ContigousMemoryAllocator memory) {
+	}
+
+	//how many holes (or block sizes) the last place call looked at, for instrumentation
+	default int lastScanned() {
+		return 1;
+	}
+
+	//writes whatever the strategy keeps beyond the holes, such as a search position, for a checkpoint
+	default void writeState(DataOutput out) throws IOException {
+	}
+
+	//reads back what writeState wrote, after reset has rebuilt the strategy from the restored holes
+	default void readState(DataInput in) throws IOException {
+	}
+
+	//short names accepted by forName, in menu order
+	String[] NAMES = {"best", "worst", "next", "segregated", "buddy", "lifetime"};
+
+	//creates a fresh strategy from its short name
+	static AllocationStrategy forName(String name) {
+		switch (name) {
+			case "best":
+				return new BestFitStrategy();
+			case "worst":
+				return new WorstFitStrategy();
+			case "next":
+				return new NextFitStrategy();
+			case "segregated":
+				return new SegregatedFitStrategy();
+			case "buddy":
+				return new BuddyStrategy();
+			case "lifetime":
+				return new LifetimeStrategy();
+			default:
+				throw new IllegalArgumentException("Unknown allocation strategy: " + name);
+		}
+	}
+}
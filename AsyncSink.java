@@ -0,0 +1,89 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//hands event text to a background thread through a ring buffer, so the simulation never waits on I/O
+//only one thread may write to it; if the ring fills up the writer waits for the background thread to catch up
+public class AsyncSink implements EventSink {
+	private String[] ring;
+	private int mask;
+	private AtomicLong head = new AtomicLong(); //next slot the background thread reads
+	private AtomicLong tail = new AtomicLong(); //next slot the writer fills
+	private EventSink out; //where the background thread writes
+	private Thread worker;
+	private volatile boolean sleeping; //background thread is parked waiting for text
+	private volatile boolean closed;
+
+	// constructor, capacity is rounded up to a power of two
+	public AsyncSink(EventSink out, int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.ring = new String[size];
+		this.mask = size - 1;
+		this.out = out;
+		this.worker = new Thread(this::drain, "async-event-sink");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	public void write(CharSequence text) {
+		long t = tail.get();
+		while (t - head.get() >= ring.length) {
+			//ring is full, give the background thread a moment
+			LockSupport.unpark(worker);
+			Thread.onSpinWait();
+		}
+		ring[(int) t & mask] = text.toString();
+		tail.lazySet(t + 1);
+		if (sleeping) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	//waits until the background thread has written everything so far, then flushes its output
+	public void flush() {
+		while (head.get() < tail.get()) {
+			LockSupport.unpark(worker);
+			Thread.yield();
+		}
+		out.flush();
+	}
+
+	public void close() {
+		if (closed) {
+			return;
+		}
+		flush();
+		closed = true;
+		LockSupport.unpark(worker);
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		out.close();
+	}
+
+	//background loop: moves text from the ring to the output until the sink is closed
+	private void drain() {
+		while (true) {
+			long h = head.get();
+			long t = tail.get();
+			if (h == t) {
+				if (closed) {
+					return;
+				}
+				sleeping = true;
+				if (tail.get() == t && !closed) {
+					LockSupport.parkNanos(1_000_000L);
+				}
+				sleeping = false;
+				continue;
+			}
+			for (; h < t; h++) {
+				int slot = (int) h & mask;
+				out.write(ring[slot]);
+				ring[slot] = null;
+			}
+			head.lazySet(t);
+		}
+	}
+}
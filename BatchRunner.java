@@ -0,0 +1,224 @@
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+//runs every policy against the same seeded workloads in parallel and prints one comparison table
+//usage: java BatchRunner [memory=1024,2048] [sizeMax=100] [procs=10] [time=10000] [seeds=16] [firstSeed=1]
+//                        [policies=best,worst,next,segregated,buddy,lifetime] [compaction=none] [threads=<cores>]
+//policies may also include paged or paged:<page KB> to run the same workloads on paged memory, and
+//compact:<best|worst>[:offheap] to run them on a compact partition table
+//memory, sizeMax, procs, time and compaction take comma separated lists and every combination is run
+//compaction is none, failure, threshold:<percent> or incremental:<KB per tick>
+//every value is checked as HeadlessRunner checks it, and a bad one exits with HeadlessRunner's usage status
+public class BatchRunner {
+	//keys whose values are checked as a SimulationConfig key, the list keys once per value
+	private static final Map<String, String> CHECKED_AS = Map.of("memory", "memory", "sizeMax", "sizeMax", "procs", "procs",
+			"time", "time", "policies", "policy", "compaction", "compaction", "firstSeed", "seed");
+
+	//one simulation: a policy on the workload generated from a seed
+	public static class Job {
+		final String policy;
+		final String compaction;
+		final int memory;
+		final int procSizeMax;
+		final int numProc;
+		final int maxProcTime;
+		final long seed;
+
+		public Job(String policy, String compaction, int memory, int procSizeMax, int numProc, int maxProcTime, long seed) {
+			this.policy = policy;
+			this.compaction = compaction;
+			this.memory = memory;
+			this.procSizeMax = procSizeMax;
+			this.numProc = numProc;
+			this.maxProcTime = maxProcTime;
+			this.seed = seed;
+		}
+
+		//the grid point this job belongs to, shared by all of its seeds, with the policy and compaction padded to the
+		//given widths
+		String group(int policyWidth, int compactionWidth) {
+			return String.format("%8d %8d %8d %8d  %-" + policyWidth + "s %-" + compactionWidth + "s",
+					memory, numProc, procSizeMax, maxProcTime, policy, compaction);
+		}
+	}
+
+	//what one simulation measured
+	public static class Result {
+		final Job job;
+		final long ticks;
+		final int waited;
+		final long totalWait;
+		final int maxWaiting;
+		final int stuck;
+		final long relocated;
+		final double holes;
+		final long nanos;
+
+		Result(Job job, Simulation sim, long nanos) {
+			this.job = job;
+			this.ticks = sim.getTicks();
+			this.waited = sim.getWaited();
+			this.totalWait = sim.getTotalWait();
+			this.maxWaiting = sim.getMaxWaiting();
+			this.stuck = sim.getStuck();
+			this.relocated = sim.getRelocated();
+			this.holes = sim.getAverageHoles();
+			this.nanos = nanos;
+		}
+	}
+
+	//runs a single job on its own allocator and workload
+	public static Result run(Job job) {
+		List<Process> processes = WorkloadGenerator.generate(job.seed, job.numProc, job.procSizeMax, job.maxProcTime);
+		Simulation sim = new Simulation(MemoryManager.forPolicy(job.policy, job.memory));
+		sim.setOutput(EventSink.NONE, Simulation.Verbosity.QUIET);
+		sim.setCompaction(Simulation.parseCompaction(job.compaction), Simulation.parseCompactionLimit(job.compaction));
+		long start = System.nanoTime();
+		sim.run(processes);
+		return new Result(job, sim, System.nanoTime() - start);
+	}
+
+	//runs all jobs on a pool of the given size, results come back in job order
+	public static List<Result> runAll(List<Job> jobs, int threads) throws InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.submit(() -> jobs.parallelStream().map(BatchRunner::run).collect(Collectors.toList())).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	//averages the results of each grid point and policy over its seeds and prints them as a table
+	public static void printSummary(List<Result> results) {
+		int policyWidth = "policy".length();
+		int compactionWidth = "compaction".length();
+		for (Result r : results) {
+			policyWidth = Math.max(policyWidth, r.job.policy.length());
+			compactionWidth = Math.max(compactionWidth, r.job.compaction.length());
+		}
+		Map<String, List<Result>> groups = new LinkedHashMap<>();
+		for (Result r : results) {
+			groups.computeIfAbsent(r.job.group(policyWidth, compactionWidth), k -> new ArrayList<>()).add(r);
+		}
+		System.out.println(String.format("%8s %8s %8s %8s  %-" + policyWidth + "s %-" + compactionWidth
+				+ "s %6s %12s %10s %12s %9s %6s %10s %12s %9s",
+				"memory", "procs", "sizeMax", "time", "policy", "compaction", "seeds", "makespan", "waited", "avg wait",
+				"max queue", "stuck", "avg holes", "moved KB", "ms"));
+		for (Map.Entry<String, List<Result>> e : groups.entrySet()) {
+			List<Result> rs = e.getValue();
+			double ticks = 0, waited = 0, wait = 0, holes = 0, relocated = 0, nanos = 0;
+			int maxQueue = 0, stuck = 0, processes = 0;
+			for (Result r : rs) {
+				ticks += r.ticks;
+				waited += r.waited;
+				wait += r.totalWait;
+				holes += r.holes;
+				relocated += r.relocated;
+				nanos += r.nanos;
+				maxQueue = Math.max(maxQueue, r.maxWaiting);
+				stuck += r.stuck;
+				processes += r.job.numProc;
+			}
+			int n = rs.size();
+			System.out.println(String.format("%s %6d %12.1f %10.1f %12.1f %9d %6d %10.1f %12.1f %9.2f",
+					e.getKey(), n, ticks / n, waited / n, wait / processes, maxQueue, stuck, holes / n, relocated / n, nanos / n / 1e6));
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Map<String, String> opts = new HashMap<>();
+		int[] memory, sizeMax, procs, time;
+		int seeds, threads;
+		long firstSeed;
+		String[] policies, compactions;
+		try {
+			for (String arg : args) {
+				String[] kv = arg.split("=", 2);
+				if (kv.length != 2) {
+					throw new IllegalArgumentException("Expected key=value but got: " + arg);
+				}
+				if (!CHECKED_AS.containsKey(kv[0]) && !kv[0].equals("seeds") && !kv[0].equals("threads")) {
+					throw new IllegalArgumentException("Unknown setting: " + kv[0]);
+				}
+				opts.put(kv[0], kv[1]);
+			}
+			memory = ints(list(opts, "memory", "1024"));
+			sizeMax = ints(list(opts, "sizeMax", "100"));
+			procs = ints(list(opts, "procs", "10"));
+			time = ints(list(opts, "time", "10000"));
+			policies = list(opts, "policies", String.join(",", AllocationStrategy.NAMES));
+			compactions = list(opts, "compaction", "none");
+			seeds = positive("seeds", opts.getOrDefault("seeds", "16"));
+			threads = positive("threads", opts.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+			String seed = opts.getOrDefault("firstSeed", "1");
+			check("firstSeed", seed);
+			firstSeed = Long.parseLong(seed);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(HeadlessRunner.USAGE);
+			return;
+		}
+
+		List<Job> jobs = new ArrayList<>();
+		for (int m : memory) {
+			for (int p : procs) {
+				for (int s : sizeMax) {
+					for (int t : time) {
+						for (String policy : policies) {
+							for (String compaction : compactions) {
+								for (int i = 0; i < seeds; i++) {
+									jobs.add(new Job(policy, compaction, m, s, p, t, firstSeed + i));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		long start = System.nanoTime();
+		List<Result> results = runAll(jobs, threads);
+		printSummary(results);
+		System.out.println(String.format("%n%d simulations on %d threads in %.1f ms", jobs.size(), threads, (System.nanoTime() - start) / 1e6));
+	}
+
+	//the values of a comma separated list option, each checked as HeadlessRunner would check it
+	private static String[] list(Map<String, String> opts, String key, String defaults) {
+		String[] values = opts.getOrDefault(key, defaults).split(",");
+		for (String value : values) {
+			check(key, value);
+		}
+		return values;
+	}
+
+	//checks a value as SimulationConfig checks the key it maps to, but reports it under this runner's key
+	private static void check(String key, String value) {
+		try {
+			new SimulationConfig().set(CHECKED_AS.get(key), value);
+		} catch (IllegalArgumentException e) {
+			String reason = e.getCause() != null ? e.getCause().getMessage() : null;
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value + (reason != null ? " (" + reason + ")" : ""));
+		}
+	}
+
+	//parses a list of integers that has been checked already
+	private static int[] ints(String[] list) {
+		return Arrays.stream(list).mapToInt(Integer::parseInt).toArray();
+	}
+
+	//parses a count that must be at least 1
+	private static int positive(String key, String value) {
+		try {
+			int n = Integer.parseInt(value);
+			if (n >= 1) {
+				return n;
+			}
+		} catch (NumberFormatException e) {
+			//reported below like a value below 1
+		}
+		throw new IllegalArgumentException("Invalid value for " + key + ": " + value + " (must be at least 1)");
+	}
+}
@@ -0,0 +1,17 @@
+//places each request in the smallest hole it fits in
+public class BestFitStrategy implements AllocationStrategy {
+	private ContigousMemoryAllocator memory;
+
+	public String getName() {
+		return "best fit";
+	}
+
+	public void reset(ContigousMemoryAllocator memory) {
+		this.memory = memory;
+	}
+
+	public int place(int size) {
+		Partition hole = memory.smallestHole(size);
+		return hole == null ? -1 : hole.getBase();
+	}
+}
@@ -0,0 +1,108 @@
+import java.util.BitSet;
+
+//binary buddy system: requests are rounded up to a power of two and placed in aligned blocks that split and merge in pairs
+public class BuddyStrategy implements AllocationStrategy {
+	private BitSet[] free; //bit i of free[k] is set while the 2^k KB block at address i * 2^k is free
+	private int[] freeCount; //number of free blocks of each order
+	private int maxOrder; //order of the largest block that fits in memory
+	private int scanned; //block sizes the last search looked at
+
+	public String getName() {
+		return "buddy system";
+	}
+
+	public void reset(ContigousMemoryAllocator memory) {
+		int size = memory.getSize();
+		maxOrder = size > 0 ? 31 - Integer.numberOfLeadingZeros(size) : 0;
+		free = new BitSet[maxOrder + 1];
+		freeCount = new int[maxOrder + 1];
+		for(int k = 0; k <= maxOrder; k++) {
+			free[k] = new BitSet((size >> k) + 1);
+		}
+		for(Partition hole : memory.getHoles().values()) {
+			freeRange(hole.getBase(), hole.getLength());
+		}
+	}
+
+	public int reserve(int size) {
+		return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+	}
+
+	public int place(int size) {
+		int order = Integer.numberOfTrailingZeros(reserve(size));
+		//find the smallest free block that is big enough
+		int k = order;
+		while(k <= maxOrder && freeCount[k] == 0) {
+			k++;
+		}
+		scanned = Math.min(k, maxOrder) - order + 1;
+		if(k > maxOrder) {
+			return -1;
+		}
+		int base = free[k].nextSetBit(0) << k;
+		take(base, k);
+		//split it in halves until it is the right size, freeing the upper half each time
+		while(k > order) {
+			k--;
+			give(base + (1 << k), k);
+		}
+		return base;
+	}
+
+	public int lastScanned() {
+		return scanned;
+	}
+
+	public void released(int base, int length) {
+		freeRange(base, length);
+	}
+
+	//moved partitions no longer sit on their buddy boundaries, so the free blocks are rebuilt from the holes
+	public void compacted(ContigousMemoryAllocator memory) {
+		for(int k = 0; k <= maxOrder; k++) {
+			free[k].clear();
+			freeCount[k] = 0;
+		}
+		for(Partition hole : memory.getHoles().values()) {
+			freeRange(hole.getBase(), hole.getLength());
+		}
+	}
+
+	//frees a range by breaking it into the largest aligned blocks it contains
+	private void freeRange(int base, int length) {
+		while(length > 0) {
+			int order = 31 - Integer.numberOfLeadingZeros(length);
+			if(base != 0) {
+				order = Math.min(order, Integer.numberOfTrailingZeros(base));
+			}
+			order = Math.min(order, maxOrder);
+			freeBlock(base, order);
+			base += 1 << order;
+			length -= 1 << order;
+		}
+	}
+
+	//frees a block, merging it with its buddy for as long as the buddy is free too
+	private void freeBlock(int base, int order) {
+		while(order < maxOrder) {
+			int buddy = base ^ (1 << order);
+			if(!free[order].get(buddy >> order)) {
+				break;
+			}
+			take(buddy, order);
+			base = Math.min(base, buddy);
+			order++;
+		}
+		give(base, order);
+	}
+
+	private void take(int base, int order) {
+		free[order].clear(base >> order);
+		freeCount[order]--;
+	}
+
+	private void give(int base, int order) {
+		free[order].set(base >> order);
+		freeCount[order]++;
+	}
+}
@@ -0,0 +1,81 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+//saves a simulation part way through to a binary file and loads it back, so many what-if runs can start from the
+//same warmed up, fragmented memory instead of simulating the warm up again
+//usage: java Checkpoint save <checkpoint> <tick> [key=value settings as for HeadlessRunner]
+//       java Checkpoint resume <checkpoint> [policy] [compaction]
+public class Checkpoint {
+	private static final int MAGIC = 0x4D434B50; //"MCKP"
+	private static final int VERSION = 2;
+
+	//writes the simulation's state to a file
+	public static void save(Simulation sim, Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			sim.writeCheckpoint(out);
+		}
+	}
+
+	//a simulation in the state saved to a file, continuing with another fit policy if one is given (null keeps it)
+	public static Simulation load(Path file, String policy) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a checkpoint");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has unsupported checkpoint version " + version);
+			}
+			return Simulation.readCheckpoint(in, policy);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		try {
+			run(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(HeadlessRunner.USAGE);
+		}
+	}
+
+	private static void run(String[] args) throws IOException {
+		if (args.length >= 3 && args[0].equals("save")) {
+			SimulationConfig config = SimulationConfig.fromArgs(Arrays.copyOfRange(args, 3, args.length));
+			Simulation sim = config.simulation();
+			sim.setOutput(EventSink.NONE, Simulation.Verbosity.QUIET);
+			sim.start(config.workload());
+			sim.advance(Long.parseLong(args[2]));
+			save(sim, Paths.get(args[1]));
+			System.out.println("Saved tick " + sim.getTicks() + " with " + sim.getRunning() + " running and "
+					+ sim.getWaiting() + " waiting to " + args[1]);
+		}
+		else if (args.length >= 2 && args[0].equals("resume")) {
+			Simulation sim = load(Paths.get(args[1]), args.length > 2 ? args[2] : null);
+			if (args.length > 3) {
+				sim.setCompaction(Simulation.parseCompaction(args[3]), Simulation.parseCompactionLimit(args[3]));
+			}
+			sim.setOutput(EventSink.NONE, Simulation.Verbosity.QUIET);
+			long start = System.nanoTime();
+			sim.advance(Long.MAX_VALUE);
+			System.out.println("policy=" + sim.getAllocator().getName().replace(' ', '_') + " makespan=" + sim.getTicks()
+					+ " waited=" + sim.getWaited() + " avg_wait=" + (double) sim.getTotalWait() / Math.max(1, sim.getRegistry().size())
+					+ " max_queue=" + sim.getMaxWaiting() + " stuck=" + sim.getStuck() + " relocated_kb=" + sim.getRelocated()
+					+ " ms=" + (System.nanoTime() - start) / 1e6);
+		}
+		else {
+			System.err.println("usage: java Checkpoint save <checkpoint> <tick> [key=value ...]");
+			System.err.println("       java Checkpoint resume <checkpoint> [policy] [compaction]");
+			System.exit(HeadlessRunner.USAGE);
+		}
+	}
+}
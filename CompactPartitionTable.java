@@ -0,0 +1,551 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+//a partition store for very large simulations that keeps every partition in a record of four ints (16 bytes) instead of
+//an object. With the table's room to grow and the hole index it comes to about 29 bytes a partition for a million
+//partitions a quarter of which are holes, and up to about 42 for small tables
+//each slot holds the partition's base, its owner id (-1 while free) and the slots of its lower and higher neighbours
+//partitions always tile memory, so a partition's length is the next partition's base minus its own and is never stored;
+//merging a hole into its neighbour is just unlinking it. The slots live in an int array or, optionally, off-heap
+//free holes are indexed by (length, base) in chunked sorted primitive arrays for O(log n) best and worst fit lookups
+//policy syntax: compact:<best|worst>[:offheap]
+public class CompactPartitionTable implements MemoryManager {
+	static final byte CHECKPOINT_KIND = 3; //first byte of a checkpoint of a compact partition table
+	private static final int BASE = 0, OWNER = 1, PREV = 2, NEXT = 3, STRIDE = 4;
+	private static final int NONE = -1;
+
+	//which hole a request is carved from
+	public enum Fit {
+		BEST,  //smallest hole that fits, lowest address on ties
+		WORST  //largest hole, lowest address on ties
+	}
+
+	private int size; //maximum memory size in KB
+	private Fit fit;
+	private boolean offHeap;
+	private int[] heap; //slot table when kept on the heap
+	private IntBuffer direct; //slot table when kept off-heap
+	private int capacity; //slots the table has room for
+	private int used; //slots ever handed out
+	private int freeSlot = NONE; //recycled slots, chained through NEXT
+	private int head; //slot of the partition at address 0
+	private int partitions; //number of partitions in memory
+	private int[] slotOf = new int[16]; //process id to the slot of its partition
+	private HoleIndex holes = new HoleIndex(); //every hole keyed by (length << 32 | base)
+	private int free; //KB not allocated to any process
+	private long allocations; //allocation requests so far
+	private long failures; //allocation requests that found no room
+	private long relocated; //KB moved by compaction
+	private long merges; //holes merged with a neighbour by releases
+
+	// constructor
+	public CompactPartitionTable(int size, Fit fit, boolean offHeap) {
+		this.size = size;
+		this.fit = fit;
+		this.offHeap = offHeap;
+		this.capacity = 1024;
+		if (offHeap) {
+			direct = ByteBuffer.allocateDirect(capacity * STRIDE * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		else {
+			heap = new int[capacity * STRIDE];
+		}
+		Arrays.fill(slotOf, NONE);
+		//the first hole is the whole memory at start up
+		head = newSlot(0, NONE, NONE, NONE);
+		partitions = 1;
+		free = size;
+		addHole(head);
+	}
+
+	//a table for a policy of the form compact:<best|worst>[:offheap]
+	static CompactPartitionTable forPolicy(String policy, int size) {
+		String[] parts = parts(policy);
+		return new CompactPartitionTable(size, fit(parts[1]), parts.length == 3);
+	}
+
+	//the fit and the optional offheap flag of a compact policy, checked
+	private static String[] parts(String policy) {
+		String[] parts = policy.split(":");
+		if (parts.length < 2 || parts.length > 3 || !parts[0].equals("compact")
+				|| (parts.length == 3 && !parts[2].equals("offheap"))) {
+			throw new IllegalArgumentException("Compact policy must look like compact:<best|worst>[:offheap]: " + policy);
+		}
+		return parts;
+	}
+
+	private static Fit fit(String name) {
+		switch (name) {
+			case "best":
+				return Fit.BEST;
+			case "worst":
+				return Fit.WORST;
+			default:
+				throw new IllegalArgumentException("Unknown compact fit: " + name);
+		}
+	}
+
+	public String getName() {
+		return "compact " + (fit == Fit.BEST ? "best" : "worst") + " fit" + (offHeap ? " (off-heap)" : "");
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getFreeMemory() {
+		return free;
+	}
+
+	//requests take exactly what they ask for
+	public int reserve(int size) {
+		return size;
+	}
+
+	//the largest hole, which is the largest request that can be placed
+	public int largestFree() {
+		int slot = holes.largest();
+		return slot == NONE ? 0 : length(slot);
+	}
+
+	public int getPartitionCount() {
+		return partitions;
+	}
+
+	public int getHoleCount() {
+		return holes.size;
+	}
+
+	//average hole size in KB, 0 when memory is full
+	public double averageHole() {
+		return holes.size > 0 ? (double) free / holes.size : 0;
+	}
+
+	//percent of the free memory that lies outside the largest hole, 0 when it is all one hole
+	public double fragmentation() {
+		return free > 0 ? 100.0 * (free - largestFree()) / free : 0;
+	}
+
+	public long getAllocations() {
+		return allocations;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	//KB moved by compaction since the table was created
+	public long getRelocated() {
+		return relocated;
+	}
+
+	//holes merged with a neighbour by releases so far
+	public long getMerges() {
+		return merges;
+	}
+
+	//length of the partition in a slot
+	public int length(int slot) {
+		int next = get(slot, NEXT);
+		return (next == NONE ? size : get(next, BASE)) - get(slot, BASE);
+	}
+
+	//allocates memory for a process id, returns the KB allocated or -1
+	public int allocate(int process, int size) {
+		if (process < 0 || process < slotOf.length && slotOf[process] != NONE) {
+			return -1; //illegal request as process has already been allocated a partition
+		}
+		allocations++;
+		int slot = fit == Fit.BEST ? holes.ceiling((long) size << 32) : holes.largest();
+		if (slot == NONE || length(slot) < size) {
+			failures++;
+			return -1;
+		}
+		removeHole(slot);
+		int length = length(slot);
+		if (length > size) {
+			//the allocation takes the front of the hole, the rest stays free in a new slot after it
+			int rest = newSlot(get(slot, BASE) + size, NONE, slot, get(slot, NEXT));
+			if (get(slot, NEXT) != NONE) {
+				set(get(slot, NEXT), PREV, rest);
+			}
+			set(slot, NEXT, rest);
+			partitions++;
+			addHole(rest);
+		}
+		set(slot, OWNER, process);
+		if (process >= slotOf.length) {
+			int old = slotOf.length;
+			slotOf = Arrays.copyOf(slotOf, Math.max(process + 1, old * 2));
+			Arrays.fill(slotOf, old, slotOf.length, NONE);
+		}
+		slotOf[process] = slot;
+		free -= size;
+		return size;
+	}
+
+	//releases a process's partition and merges it with the free partitions next to it, returns the KB freed or -1
+	public int release(int process) {
+		int slot = process >= 0 && process < slotOf.length ? slotOf[process] : NONE;
+		if (slot == NONE) {
+			return -1; //no such partition is allocated to process
+		}
+		slotOf[process] = NONE;
+		int freed = length(slot);
+		free += freed;
+		set(slot, OWNER, NONE);
+		int next = get(slot, NEXT);
+		if (next != NONE && get(next, OWNER) == NONE) {
+			//the following hole disappears and this partition grows over it
+			merges++;
+			removeHole(next);
+			unlink(next);
+		}
+		int prev = get(slot, PREV);
+		if (prev != NONE && get(prev, OWNER) == NONE) {
+			//the preceding hole grows over this partition
+			merges++;
+			removeHole(prev);
+			unlink(slot);
+			slot = prev;
+		}
+		addHole(slot);
+		return freed;
+	}
+
+	//releases are independent of each other, so a batch is just the releases in order
+	public long release(int[] processes, int n, int[] freed) {
+		long total = 0;
+		for (int i = 0; i < n; i++) {
+			freed[i] = release(processes[i]);
+			if (freed[i] != -1) {
+				total += freed[i];
+			}
+		}
+		return total;
+	}
+
+	//slides allocated partitions down into the lowest hole one at a time, stopping once at least maxKB have been moved
+	//(partitions are always moved whole) or all the free memory is one hole at the top. Returns the KB moved
+	public int compact(int maxKB) {
+		int hole = head;
+		while (hole != NONE && get(hole, OWNER) != NONE) {
+			hole = get(hole, NEXT);
+		}
+		int moved = 0;
+		//the lowest hole stays the lowest as it bubbles up: the hole's slot takes over the partition above it
+		//and that partition's slot becomes the hole, so no slot is relinked
+		while (moved < maxKB && hole != NONE && get(hole, NEXT) != NONE) {
+			int part = get(hole, NEXT);
+			int owner = get(part, OWNER);
+			int length = length(part);
+			removeHole(hole);
+			set(hole, OWNER, owner);
+			slotOf[owner] = hole;
+			set(part, BASE, get(hole, BASE) + length);
+			set(part, OWNER, NONE);
+			hole = part;
+			int next = get(hole, NEXT);
+			if (next != NONE && get(next, OWNER) == NONE) {
+				removeHole(next);
+				unlink(next);
+			}
+			addHole(hole);
+			moved += length;
+		}
+		relocated += moved;
+		return moved;
+	}
+
+	//appends a separator and a picture of every partition in address order to out, like ContigousMemoryAllocator
+	public void appendStatus(ProcessRegistry processes, StringBuilder out) {
+		out.append(ContigousMemoryAllocator.BANNER).append('\n');
+		out.append("\n|");
+		for (int slot = head; slot != NONE; slot = get(slot, NEXT)) {
+			int owner = get(slot, OWNER);
+			if (owner == NONE) {
+				out.append(" Free (").append(length(slot)).append(" KB) ");
+			} else {
+				Process process = processes.get(owner);
+				out.append(' ').append(process.getName()).append(" [").append((double)process.getTime()/1000)
+						.append("s] (").append(length(slot)).append(" KB) ");
+			}
+		}
+		out.append("|\n");
+	}
+
+	//appends a separator and the number of holes, their average and total size and the percent of memory free to out
+	public void appendMemoryStats(StringBuilder out) {
+		out.append(ContigousMemoryAllocator.BANNER).append('\n');
+		out.append("\nNumber of holes: ").append(getHoleCount()).append('\n');
+		out.append("Average size of holes: ").append(averageHole()).append(" KB\n");
+		out.append("Total size of holes: ").append(free).append(" KB\n");
+		out.append("Percentage of total free memory: ").append((double) free / size * 100).append("%\n");
+	}
+
+	//writes the partitions in address order (base addresses follow from the lengths) and the counters, for a checkpoint
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeByte(CHECKPOINT_KIND);
+		out.writeInt(size);
+		out.writeByte(fit.ordinal());
+		out.writeBoolean(offHeap);
+		out.writeInt(partitions);
+		for (int slot = head; slot != NONE; slot = get(slot, NEXT)) {
+			out.writeInt(length(slot));
+			out.writeInt(get(slot, OWNER));
+		}
+		out.writeLong(allocations);
+		out.writeLong(failures);
+		out.writeLong(relocated);
+		out.writeLong(merges);
+	}
+
+	//a table in the state written by writeTo, after its kind byte, with the slots laid out in address order
+	//a compact policy (null keeps the saved one) can switch the fit or the storage on the same partitions
+	static CompactPartitionTable readFrom(DataInput in, String policy) throws IOException {
+		int size = in.readInt();
+		Fit fit = Fit.values()[in.readByte()];
+		boolean offHeap = in.readBoolean();
+		if (policy != null) {
+			if (!policy.startsWith("compact:")) {
+				throw new IllegalArgumentException("A checkpoint of a compact partition table cannot continue as " + policy);
+			}
+			String[] parts = parts(policy);
+			fit = fit(parts[1]);
+			offHeap = parts.length == 3;
+		}
+		CompactPartitionTable memory = new CompactPartitionTable(size, fit, offHeap);
+		memory.used = 0;
+		memory.holes = new HoleIndex();
+		memory.free = 0;
+		memory.partitions = in.readInt();
+		int last = NONE;
+		int base = 0;
+		for (int n = memory.partitions; n > 0; n--) {
+			int length = in.readInt();
+			int owner = in.readInt();
+			int slot = memory.newSlot(base, owner, last, NONE);
+			if (last == NONE) {
+				memory.head = slot;
+			}
+			else {
+				memory.set(last, NEXT, slot);
+			}
+			if (owner != NONE) {
+				if (owner >= memory.slotOf.length) {
+					int old = memory.slotOf.length;
+					memory.slotOf = Arrays.copyOf(memory.slotOf, Math.max(owner + 1, old * 2));
+					Arrays.fill(memory.slotOf, old, memory.slotOf.length, NONE);
+				}
+				memory.slotOf[owner] = slot;
+			}
+			else {
+				memory.free += length;
+			}
+			base += length;
+			last = slot;
+		}
+		//a hole's length needs the partition after it, so the holes are indexed once the list is complete
+		for (int slot = memory.head; slot != NONE; slot = memory.get(slot, NEXT)) {
+			if (memory.get(slot, OWNER) == NONE) {
+				memory.addHole(slot);
+			}
+		}
+		memory.allocations = in.readLong();
+		memory.failures = in.readLong();
+		memory.relocated = in.readLong();
+		memory.merges = in.readLong();
+		return memory;
+	}
+
+	//takes a slot from the recycled chain or the end of the table
+	private int newSlot(int base, int owner, int prev, int next) {
+		int slot;
+		if (freeSlot != NONE) {
+			slot = freeSlot;
+			freeSlot = get(slot, NEXT);
+		}
+		else {
+			if (used == capacity) {
+				grow();
+			}
+			slot = used++;
+		}
+		set(slot, BASE, base);
+		set(slot, OWNER, owner);
+		set(slot, PREV, prev);
+		set(slot, NEXT, next);
+		return slot;
+	}
+
+	//removes a slot from the address list and recycles it
+	private void unlink(int slot) {
+		int prev = get(slot, PREV);
+		int next = get(slot, NEXT);
+		if (prev != NONE) {
+			set(prev, NEXT, next);
+		}
+		else {
+			head = next;
+		}
+		if (next != NONE) {
+			set(next, PREV, prev);
+		}
+		set(slot, NEXT, freeSlot);
+		freeSlot = slot;
+		partitions--;
+	}
+
+	//doubles the slot table
+	private void grow() {
+		capacity *= 2;
+		if (offHeap) {
+			IntBuffer bigger = ByteBuffer.allocateDirect(capacity * STRIDE * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+			direct.rewind();
+			bigger.put(direct);
+			direct = bigger;
+		}
+		else {
+			heap = Arrays.copyOf(heap, capacity * STRIDE);
+		}
+	}
+
+	private int get(int slot, int field) {
+		return offHeap ? direct.get(slot * STRIDE + field) : heap[slot * STRIDE + field];
+	}
+
+	private void set(int slot, int field, int value) {
+		if (offHeap) {
+			direct.put(slot * STRIDE + field, value);
+		}
+		else {
+			heap[slot * STRIDE + field] = value;
+		}
+	}
+
+	//key a hole is sorted by in the index
+	private long holeKey(int slot) {
+		return (long) length(slot) << 32 | get(slot, BASE);
+	}
+
+	private void addHole(int slot) {
+		holes.add(holeKey(slot), slot);
+	}
+
+	//takes a hole out of the index, must be called before its length changes
+	private void removeHole(int slot) {
+		holes.remove(holeKey(slot));
+	}
+
+	//sorted long keys with an int value each, kept in chunks of at most CHUNK entries so an insert or
+	//delete only shifts one chunk instead of the whole index
+	private static class HoleIndex {
+		static final int CHUNK = 512;
+		long[][] keys = {new long[CHUNK]}; //keys[c] is sorted and every key in it is below those of keys[c + 1]
+		int[][] values = {new int[CHUNK]};
+		int[] counts = new int[1];
+		int chunks = 1;
+		int size;
+
+		//value of the smallest key at or above key, or NONE
+		int ceiling(long key) {
+			int c = chunkFor(key);
+			int i = find(c, key);
+			if (i == counts[c]) {
+				if (++c == chunks) {
+					return NONE;
+				}
+				i = 0;
+			}
+			return values[c][i];
+		}
+
+		//value of the lowest addressed of the largest holes, or NONE
+		int largest() {
+			if (size == 0) {
+				return NONE;
+			}
+			long top = keys[chunks - 1][counts[chunks - 1] - 1];
+			return ceiling(top >>> 32 << 32);
+		}
+
+		void add(long key, int value) {
+			int c = chunkFor(key);
+			if (counts[c] == CHUNK) {
+				split(c);
+				if (key >= keys[c + 1][0]) {
+					c++;
+				}
+			}
+			int i = find(c, key);
+			System.arraycopy(keys[c], i, keys[c], i + 1, counts[c] - i);
+			System.arraycopy(values[c], i, values[c], i + 1, counts[c] - i);
+			keys[c][i] = key;
+			values[c][i] = value;
+			counts[c]++;
+			size++;
+		}
+
+		void remove(long key) {
+			int c = chunkFor(key);
+			int i = find(c, key);
+			System.arraycopy(keys[c], i + 1, keys[c], i, counts[c] - i - 1);
+			System.arraycopy(values[c], i + 1, values[c], i, counts[c] - i - 1);
+			counts[c]--;
+			size--;
+			if (counts[c] == 0 && chunks > 1) {
+				//drop the empty chunk
+				System.arraycopy(keys, c + 1, keys, c, chunks - c - 1);
+				System.arraycopy(values, c + 1, values, c, chunks - c - 1);
+				System.arraycopy(counts, c + 1, counts, c, chunks - c - 1);
+				chunks--;
+			}
+		}
+
+		//last chunk whose first key is at or below key (the first chunk if there is none)
+		private int chunkFor(long key) {
+			int lo = 0, hi = chunks - 1;
+			while (lo < hi) {
+				int mid = (lo + hi + 1) >>> 1;
+				if (counts[mid] > 0 && keys[mid][0] <= key) {
+					lo = mid;
+				}
+				else {
+					hi = mid - 1;
+				}
+			}
+			return lo;
+		}
+
+		//position of the first key at or above key within a chunk
+		private int find(int c, long key) {
+			int i = Arrays.binarySearch(keys[c], 0, counts[c], key);
+			return i < 0 ? -i - 1 : i;
+		}
+
+		//moves the upper half of a full chunk into a new chunk right after it
+		private void split(int c) {
+			if (chunks == keys.length) {
+				keys = Arrays.copyOf(keys, chunks * 2);
+				values = Arrays.copyOf(values, chunks * 2);
+				counts = Arrays.copyOf(counts, chunks * 2);
+			}
+			System.arraycopy(keys, c + 1, keys, c + 2, chunks - c - 1);
+			System.arraycopy(values, c + 1, values, c + 2, chunks - c - 1);
+			System.arraycopy(counts, c + 1, counts, c + 2, chunks - c - 1);
+			int half = CHUNK / 2;
+			keys[c + 1] = new long[CHUNK];
+			values[c + 1] = new int[CHUNK];
+			System.arraycopy(keys[c], half, keys[c + 1], 0, CHUNK - half);
+			System.arraycopy(values[c], half, values[c + 1], 0, CHUNK - half);
+			counts[c + 1] = CHUNK - half;
+			counts[c] = half;
+			chunks++;
+		}
+	}
+}
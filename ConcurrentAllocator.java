@@ -0,0 +1,84 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+//thread-safe allocator that splits memory into arenas, each its own ContigousMemoryAllocator behind its own lock
+//every thread is given a home arena and only falls back to the others (stealing) when its home arena has no room,
+//so threads mostly work on different locks and throughput grows with the number of arenas
+public class ConcurrentAllocator {
+	private int size; //maximum memory size in KB
+	private ContigousMemoryAllocator[] arenas;
+	private int[] offsets; //address at which each arena starts
+	private LockedRegions<String> regions; //arena locks and the arena holding each process's partition
+	private AtomicInteger nextHome = new AtomicInteger();
+	private ThreadLocal<Integer> home; //arena each thread tries first
+
+	// constructor, memory is split evenly between the arenas and each gets its own strategy instance
+	public ConcurrentAllocator(int size, int arenaCount, Supplier<AllocationStrategy> strategy) {
+		if (arenaCount < 1 || arenaCount > size) {
+			throw new IllegalArgumentException("Arena count must be between 1 and the memory size: " + arenaCount);
+		}
+		this.size = size;
+		this.arenas = new ContigousMemoryAllocator[arenaCount];
+		this.offsets = new int[arenaCount];
+		for (int i = 0; i < arenaCount; i++) {
+			offsets[i] = (int) ((long) size * i / arenaCount);
+			int end = (int) ((long) size * (i + 1) / arenaCount);
+			arenas[i] = new ContigousMemoryAllocator(end - offsets[i], strategy.get());
+		}
+		this.regions = new LockedRegions<>(arenaCount);
+		this.home = ThreadLocal.withInitial(() -> Math.floorMod(nextHome.getAndIncrement(), arenas.length));
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getArenaCount() {
+		return arenas.length;
+	}
+
+	//allocates memory for a process, returns the KB reserved or -1 if the process is already allocated or nothing fits
+	//the home arena is tried first, then any other arena that is not busy, then the busy ones are waited for
+	public int allocate(String process, int size) {
+		if (!regions.claim(process)) {
+			return -1; //illegal request as process has already been allocated a partition
+		}
+		return regions.allocate(process, home.get(), i -> true, i -> arenas[i].allocate(process, size));
+	}
+
+	//releases a process's memory, returns the KB freed or -1 if it has none
+	public int release(String process) {
+		return regions.release(process, i -> arenas[i].release(process));
+	}
+
+	//address a process's partition starts at, or -1 if it has none
+	public int address(String process) {
+		int i = regions.regionOf(process);
+		if (i == -1) {
+			return -1;
+		}
+		regions.lock(i);
+		try {
+			Partition part = arenas[i].getPartition(process);
+			return part == null ? -1 : offsets[i] + part.getBase();
+		} finally {
+			regions.unlock(i);
+		}
+	}
+
+	//total free memory across all arenas
+	public int freeMemory() {
+		int free = 0;
+		for (int i = 0; i < arenas.length; i++) {
+			regions.lock(i);
+			try {
+				for (Partition hole : arenas[i].getHoles().values()) {
+					free += hole.getLength();
+				}
+			} finally {
+				regions.unlock(i);
+			}
+		}
+		return free;
+	}
+}
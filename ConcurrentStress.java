@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+//correctness stress check for ConcurrentAllocator
+//threads allocate and release random processes while every KB handed out is claimed in a shared ownership table,
+//so two live partitions overlapping or a partition leaking outside memory is caught the moment it happens
+//usage: java ConcurrentStress [threads] [arenas] [seconds] [memory]
+public class ConcurrentStress {
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+		int arenaCount = args.length > 1 ? Integer.parseInt(args[1]) : threads;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		int memory = args.length > 3 ? Integer.parseInt(args[3]) : 1 << 20;
+
+		for (String policy : AllocationStrategy.NAMES) {
+			ConcurrentAllocator allocator = new ConcurrentAllocator(memory, arenaCount, () -> AllocationStrategy.forName(policy));
+			AtomicIntegerArray claimed = new AtomicIntegerArray(memory); //1 for every KB currently allocated
+			AtomicLong ops = new AtomicLong();
+			List<String> errors = Collections.synchronizedList(new ArrayList<>());
+			long end = System.nanoTime() + seconds * 1_000_000_000L / AllocationStrategy.NAMES.length;
+			List<Thread> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int id = t;
+				workers.add(new Thread(() -> {
+					Random rand = new Random(id);
+					List<String> live = new ArrayList<>();
+					List<int[]> ranges = new ArrayList<>(); //base and length of each live process
+					long n = 0;
+					int maxSize = Math.max(1, memory / threads / 16);
+					while (System.nanoTime() < end && errors.isEmpty()) {
+						if (live.isEmpty() || rand.nextInt(100) < 55) {
+							String name = "T" + id + "-" + n;
+							int size = rand.nextInt(maxSize) + 1;
+							int alloc = allocator.allocate(name, size);
+							if (alloc != -1) {
+								int base = allocator.address(name);
+								if (base < 0 || base + alloc > memory) {
+									//nothing is claimed for it, so it cannot be checked any further
+									errors.add(name + " was placed outside memory at " + base);
+									allocator.release(name);
+								}
+								else {
+									for (int k = base; k < base + alloc; k++) {
+										if (!claimed.compareAndSet(k, 0, 1)) {
+											errors.add(name + " overlaps another partition at " + k + "KB");
+											break;
+										}
+									}
+									live.add(name);
+									ranges.add(new int[] {base, alloc});
+								}
+							}
+						}
+						else {
+							int pick = rand.nextInt(live.size());
+							String name = live.remove(pick);
+							int[] range = ranges.remove(pick);
+							if (allocator.address(name) != range[0]) {
+								errors.add(name + " moved from " + range[0] + " to " + allocator.address(name));
+							}
+							//the claim is dropped before the memory is, since another thread may reuse it straight away
+							unclaim(claimed, range);
+							if (allocator.release(name) != range[1]) {
+								errors.add(name + " did not release the " + range[1] + "KB it was given");
+							}
+							if (allocator.release(name) != -1) {
+								errors.add(name + " was released twice");
+							}
+						}
+						n++;
+					}
+					for (int k = 0; k < live.size(); k++) {
+						unclaim(claimed, ranges.get(k));
+						allocator.release(live.get(k));
+					}
+					ops.addAndGet(n);
+				}));
+			}
+			long start = System.nanoTime();
+			workers.forEach(Thread::start);
+			for (Thread w : workers) {
+				w.join();
+			}
+			double secs = (System.nanoTime() - start) / 1e9;
+			if (allocator.freeMemory() != memory) {
+				errors.add("only " + allocator.freeMemory() + " of " + memory + "KB is free after releasing everything");
+			}
+			System.out.println(String.format("%-11s %d threads, %d arenas: %.0f ops/s %s", policy, threads, arenaCount,
+					ops.get() / secs, errors.isEmpty() ? "OK" : "FAILED"));
+			for (String error : errors) {
+				System.out.println("  " + error);
+			}
+			if (!errors.isEmpty()) {
+				System.exit(1);
+			}
+		}
+	}
+
+	private static void unclaim(AtomicIntegerArray claimed, int[] range) {
+		for (int k = range[0]; k < range[0] + range[1]; k++) {
+			claimed.set(k, 0);
+		}
+	}
+}
@@ -1,533 +1,702 @@
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-public class ContigousMemoryAllocator {
+public class ContigousMemoryAllocator implements MemoryManager {
 	private int size;    // maximum memory size in bytes (B)
-	private int nextFitStartIndex = 0; //helps keep track of placement for next fit
-	private Map<String, Partition> allocMap;   // map process to partition
-	private List<Partition> partList;    // list of memory partitions
-	// constructor
+	private AllocationStrategy strategy; //decides where each request is placed
+	//separator line printed before each message
+	static final String BANNER = "\n------------------------------------------------------------------------------"
+			+ "-------------------------------------------------------------------------------------------"
+			+ "---------------------------------------------------------------------------------------------";
+	static final byte CHECKPOINT_KIND = 0; //first byte of a checkpoint of contiguous memory
+	private Partition[] allocTable;   // process id to its partition, null while it has none
+	private Map<String, Integer> nameIds;   // ids of the processes allocated by name
+	private int[] freeNameIds = new int[16];   // ids given back by released names, reused before new ones
+	private int freeNameIdCount;
+	private int nextNameId;
+	private Partition head;    // lowest partition of the address-ordered linked list of memory partitions
+	private TreeSet<Partition> freeHoles;    // free partitions ordered by (length, base) for best/worst fit lookups
+	private TreeMap<Integer, Partition> holesByBase;    // free partitions ordered by base address
+	private Partition probe = new Partition(0, 0); //reused search key for the free hole index
+	private int free; //KB not allocated to any process
+	private long relocated; //KB moved by compaction so far
+	private long allocations; //allocation requests so far
+	private long failures; //allocation requests that found no room
+	private long merges; //holes merged with a neighbour by releases
+	private Partition[] batch = new Partition[16]; //reused by batch releases for the partitions being freed
+	private int[] batchBases = new int[16]; //and for the ranges they covered
+	private int[] batchLengths = new int[16];
+	private static final Comparator<Partition> BY_BASE = (o1, o2) -> Integer.compare(o1.getBase(), o2.getBase());
+	// constructor, places requests with best fit
 	public ContigousMemoryAllocator(int size) {
+		this(size, new BestFitStrategy());
+	}
+
+	// constructor
+	public ContigousMemoryAllocator(int size, AllocationStrategy strategy) {
 		this.size = size;
-		this.allocMap = new HashMap<>();
-		this.partList = new ArrayList<>();
-		this.partList.add(new Partition(0, size)); //add the first hole, which is the whole memory at start up
-	}
-      
-	//finds the process name 
-	public Process findProcessByName(List<Process> processes, String name) {
-	    for (Process process : processes) {
-	        if (process.getName().equals(name)) {
-	            return process;
-	        }
+		this.allocTable = new Partition[16];
+		this.nameIds = new HashMap<>();
+		this.freeHoles = new TreeSet<>((o1, o2) -> o1.getLength() != o2.getLength()
+				? Integer.compare(o1.getLength(), o2.getLength())
+				: Integer.compare(o1.getBase(), o2.getBase()));
+		this.holesByBase = new TreeMap<>();
+		Partition hole = new Partition(0, size);
+		this.head = hole; //add the first hole, which is the whole memory at start up
+		this.freeHoles.add(hole);
+		this.holesByBase.put(hole.getBase(), hole);
+		this.free = size;
+		this.strategy = strategy;
+		strategy.reset(this); //the strategy builds its own index from the holes
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public AllocationStrategy getStrategy() {
+		return strategy;
+	}
+
+	public String getName() {
+		return strategy.getName();
+	}
+
+	//KB the strategy takes for a request of the given size
+	public int reserve(int size) {
+		return strategy.reserve(size);
+	}
+
+	//the largest hole, which is the largest request that can be placed
+	public int largestFree() {
+		return largestHoleSize();
+	}
+
+	//KB not allocated to any process, summed over all holes
+	public int getFreeMemory() {
+		return free;
+	}
+
+	//KB moved by compaction since the allocator was created
+	public long getRelocated() {
+		return relocated;
+	}
+
+	public int getHoleCount() {
+		return holesByBase.size();
+	}
+
+	//average hole size in KB, 0 when memory is full
+	public double averageHole() {
+		return holesByBase.isEmpty() ? 0 : (double) free / holesByBase.size();
+	}
+
+	//size of the largest hole in KB, 0 when memory is full
+	public int largestHoleSize() {
+		return freeHoles.isEmpty() ? 0 : freeHoles.last().getLength();
+	}
+
+	//holes the strategy looked at in the last allocation
+	public int lastScanned() {
+		return strategy.lastScanned();
+	}
+
+	//holes merged with a neighbour by releases so far
+	public long getMerges() {
+		return merges;
+	}
+
+	//allocation requests so far, by name or id
+	public long getAllocations() {
+		return allocations;
+	}
+
+	//allocation requests that found no room
+	public long getFailures() {
+		return failures;
+	}
+
+	//percent of the free memory that lies outside the largest hole, 0 when it is all one hole
+	public double fragmentation() {
+		return free > 0 ? 100.0 * (free - largestHoleSize()) / free : 0;
+	}
+
+	//free partitions keyed by base address, in address order
+	public NavigableMap<Integer, Partition> getHoles() {
+		return Collections.unmodifiableNavigableMap(holesByBase);
+	}
+
+	//smallest hole that is at least the requested size, lowest base address on ties (null if none fits)
+	public Partition smallestHole(int size) {
+	    probe.setLength(size);
+	    probe.setBase(Integer.MIN_VALUE);
+	    return freeHoles.ceiling(probe);
+	}
+
+	//largest hole, lowest base address on ties (null if memory is full)
+	public Partition largestHole() {
+	    if(freeHoles.isEmpty()) {
+	        return null;
 	    }
-	    return null;
+	    return smallestHole(freeHoles.last().getLength());
+	}
+
+	//the partition allocated to a process id, or null if it has none
+	public Partition getPartition(int process) {
+	    return process >= 0 && process < allocTable.length ? allocTable[process] : null;
+	}
+
+	//the partition allocated to a process allocated by name, or null if it has none
+	public Partition getPartition(String process) {
+	    Integer id = nameIds.get(process);
+	    return id == null ? null : allocTable[id];
 	}
 	
-	//uses a String builder to build the string that prints the status of the memory
-	public void print_status(List<Process> processes) {
-
-		System.out.println("\n------------------------------------------------------------------------------"
-				+ "-------------------------------------------------------------------------------------------"
-				+ "---------------------------------------------------------------------------------------------");
-		    order_partitions();
-		    StringBuilder status = new StringBuilder();
-		    status.append("\n|");
-		    //goes through all the parts in the part list
-		    for (Partition part : partList) { 
-		        if (part.isbFree()) { 
-		        	//if the partition is free it adds the msg to the string
-		            status.append(" Free (" + part.getLength() + " KB) ");
-		        } else { 
-		        	//if partition is full, add following information to the string
-		            Process process = findProcessByName(processes, part.getProcess());
-		            status.append(" " + process.getName() + " [" +((double)process.getTime()/1000) + "s] (" + part.getLength() + " KB) ");
-		        }
-		    }
-		    status.append("|");
-		    System.out.println(status.toString());
+	//prints the status of the memory
+	public void print_status(ProcessRegistry processes) {
+		StringBuilder status = new StringBuilder();
+		appendStatus(processes, status);
+		System.out.print(status);
+	}
+
+	//appends a separator and a picture of every partition in address order to out
+	public void appendStatus(ProcessRegistry processes, StringBuilder out) {
+		out.append(BANNER).append('\n');
+		out.append("\n|");
+		//goes through all the parts in the part list
+		for (Partition part = head; part != null; part = part.getNext()) { 
+			if (part.isbFree()) { 
+				//if the partition is free it adds the msg to the string
+				out.append(" Free (").append(part.getLength()).append(" KB) ");
+			} else { 
+				//if partition is full, add following information to the string
+				Process process = processes.get(part.getOwner());
+				out.append(' ').append(process.getName()).append(" [").append((double)process.getTime()/1000)
+						.append("s] (").append(part.getLength()).append(" KB) ");
+			}
 		}
+		out.append("|\n");
+	}
     
 	//prints the number of holes, avg size of holes
 	public void printMemoryStats() {
-	    int totalFreeMemory = 0;
-	    int totalHoles = 0;
-	    //iterates through the partitions and counts how many are free (holes)
-	    for(Partition part: partList) {
-	        if(part.isbFree()) {
-	            totalFreeMemory += part.getLength();
-	            totalHoles++;
-	        }
+		StringBuilder stats = new StringBuilder();
+		appendMemoryStats(stats);
+		System.out.print(stats);
+	}
+
+	//appends a separator and the number of holes, their average and total size and the percent of memory free to out
+	//the counts are kept up to date on every allocate and release, so nothing is rescanned
+	public void appendMemoryStats(StringBuilder out) {
+	    double percentFreeMemory = (double) free / this.size * 100;
+	    out.append(BANNER).append('\n');
+	    out.append("\nNumber of holes: ").append(getHoleCount()).append('\n');
+	    out.append("Average size of holes: ").append(averageHole()).append(" KB\n");
+	    out.append("Total size of holes: ").append(free).append(" KB\n");
+	    out.append("Percentage of total free memory: ").append(percentFreeMemory).append("%\n");
+	}
+
+	//allocates memory for a process by name, returns the KB reserved or -1
+	//names get their own ids, so an allocator should be driven either by name or by ProcessRegistry ids, not both
+	public int allocate(String process, int size) {
+	    if(nameIds.containsKey(process)) {
+	        return -1; //illegal request as process has already been allocated a partition
 	    }
-	    //calculates the avg hole size and finds the percent of memory that is free
-	    double avgHoleSize = totalHoles > 0 ? (double) totalFreeMemory / totalHoles : 0;
-	    double percentFreeMemory = (double) totalFreeMemory / this.size * 100;
-	    //prints the stats of the memory
-	    System.out.println("\n------------------------------------------------------------------------------"
-				+ "-------------------------------------------------------------------------------------------"
-				+ "---------------------------------------------------------------------------------------------");
-	    System.out.println("\nNumber of holes: " + totalHoles);
-	    System.out.println("Average size of holes: " + avgHoleSize + " KB");
-	    System.out.println("Total size of holes: " + totalFreeMemory + " KB");
-	    System.out.println("Percentage of total free memory: " + percentFreeMemory + "%");
-		}
-      
-	// sort the list of partitions in ascending order of base addresses
-	private void order_partitions() {
-		Collections.sort(partList, (o1, o2) -> (o1.getBase() - o2.getBase()) );
+	    int id = freeNameIdCount > 0 ? freeNameIds[--freeNameIdCount] : nextNameId++;
+	    int alloc = allocate(id, size);
+	    if(alloc == -1) {
+	        freeNameIds = push(freeNameIds, freeNameIdCount++, id);
+	    }
+	    else {
+	        nameIds.put(process, id);
+	    }
+	    return alloc;
+	}
+
+	//allocates memory for a process id wherever the strategy places it, returns the KB reserved or -1
+	public int allocate(int process, int size) {
+		return allocate(process, size, -1);
 	}
 
-	//implements the best fit memory allocation algorithm
-	public int best_fit(String process, int size) {
-		//looks to see if the process is in the allocated map (if it is, returns -1)
-	    if(allocMap.containsKey(process)) {
+	//allocates memory for a process id that holds it for lifetime ticks (-1 if not known), wherever the strategy
+	//places it, returns the KB reserved or -1
+	public int allocate(int process, int size, int lifetime) {
+		//looks to see if the process is in the allocation table (if it is, returns -1); ids are never negative
+	    if(process < 0 || getPartition(process) != null) {
 	        return -1;
 	    }
-	    int index = 0, alloc = -1, smIndex = -1;
-	    while(index < partList.size()) {
-	        Partition part = partList.get(index);
-	        
-	        if(part.isbFree() && part.getLength()>= size) {
-	            if(smIndex == -1 || part.getLength() < partList.get(smIndex).getLength()) {
-	                smIndex = index;
-	            }
+	    allocations++;
+	    int base = strategy.place(size, lifetime);
+	    if(base < 0) {
+	        failures++;
+	        return -1;
+	    }
+	    int length = strategy.reserve(size);
+	    carve(holesByBase.floorEntry(base).getValue(), base, length, process);
+	    free -= length;
+	    return length;
+	}
+
+	//allocates memory for the first n process ids in request order, see MemoryManager
+	public long allocate(int[] processes, int[] sizes, int[] lifetimes, int n, int[] allocated) {
+	    return allocate(processes, sizes, lifetimes, n, allocated, false);
+	}
+
+	//allocates memory for the first n process ids at once, in request order or largest request first, each held for
+	//lifetimes[i] ticks (-1 if not known), and stores the KB reserved for processes[i] (or -1) in allocated[i]
+	//Returns the total KB reserved. Placement is still up to the strategy, but once a size has failed every request
+	//at least as big is skipped without a search, as is any request bigger than the largest hole; skipped requests
+	//are not counted. A process asked for twice only gets its first request
+	public long allocate(int[] processes, int[] sizes, int[] lifetimes, int n, int[] allocated, boolean largestFirst) {
+	    long[] keys = null;
+	    if(largestFirst) {
+	        //big requests are placed while the big holes are still whole, ties keep request order
+	        keys = new long[n];
+	        for(int i = 0; i < n; i++) {
+	            keys[i] = (long) (Integer.MAX_VALUE - Math.max(sizes[i], 0)) << 32 | i;
 	        }
-	        index++;
+	        Arrays.sort(keys);
 	    }
-	    if(smIndex != -1) {
-	        Partition part = partList.get(smIndex);
-	        Partition allocPart = new Partition(part.getBase(), size);
-	        allocPart.setbFree(false);
-	        allocPart.setProcess(process);
-	        partList.add(smIndex, allocPart);
-	        allocMap.put(process, allocPart);
-	        part.setBase(part.getBase()+size);
-	        part.setLength(part.getLength() - size);
-	        if(part.getLength() == 0) {
-	            partList.remove(part);
+	    long total = 0;
+	    int failedSize = Integer.MAX_VALUE; //smallest size that found no room
+	    for(int k = 0; k < n; k++) {
+	        int i = keys == null ? k : (int) keys[k];
+	        if(sizes[i] >= failedSize || strategy.reserve(sizes[i]) > largestHoleSize()) {
+	            allocated[i] = -1;
+	            continue;
+	        }
+	        allocated[i] = allocate(processes[i], sizes[i], lifetimes[i]);
+	        if(allocated[i] == -1) {
+	            if(processes[i] >= 0 && getPartition(processes[i]) == null) {
+	                failedSize = sizes[i];
+	            }
+	        }
+	        else {
+	            total += allocated[i];
 	        }
-	        alloc = size;
 	    }
-	    return alloc;
+	    return total;
 	}
 
-	//implements the worst fit memory allocation algorithm
-	public int worst_fit(String process, int size) {
-		    if(allocMap.containsKey(process)) {
-		        return -1;
-		    }
-		    int index = 0, alloc = -1, lgIndex = -1;
-		    while(index < partList.size()) {
-		        Partition part = partList.get(index);
-		        if(part.isbFree() && part.getLength()>= size) {
-		            if(lgIndex == -1 || part.getLength() > partList.get(lgIndex).getLength()) {
-		                lgIndex = index;
-		            }
-		        }
-		        index++;
-		    }
-		    if(lgIndex != -1) {
-		        Partition part = partList.get(lgIndex);
-		        Partition allocPart = new Partition(part.getBase(), size);
-		        allocPart.setbFree(false);
-		        allocPart.setProcess(process);
-		        partList.add(lgIndex, allocPart);
-		        allocMap.put(process, allocPart);
-		        part.setBase(part.getBase()+size);
-		        part.setLength(part.getLength() - size);
-		        if(part.getLength() == 0) {
-		            partList.remove(part);
-		        }
-		        alloc = size;
-		    }
-		    return alloc;
-		}
-
-	//implements the next fit memory allocation algorithm
-	public int next_fit(String process, int size) {
-	    if(allocMap.containsKey(process)) {
-	        return -1; //illegal request as process has already been allocated a partition
+	//splits an allocated partition covering [base, base + length) out of the free partition containing it
+	private Partition carve(Partition hole, int base, int length, int process) {
+	    Partition allocPart = new Partition(base, length);
+	    allocPart.setbFree(false);
+	    allocPart.setOwner(process);
+	    if(process >= allocTable.length) {
+	        allocTable = Arrays.copyOf(allocTable, Math.max(process + 1, allocTable.length * 2));
 	    }
-	    int index = nextFitStartIndex, alloc = -1;
-	    do {
-	        Partition part = partList.get(index);
-	        if(part.isbFree() && part.getLength()>= size) { //found a free partition that is right size
-	            Partition allocPart = new Partition(part.getBase(), size);
-	            allocPart.setbFree(false);
-	            allocPart.setProcess(process);
-	            partList.add(index, allocPart); //insert this allocated partition at index
-	            allocMap.put(process, allocPart);
-	            part.setBase(part.getBase()+size);
-	            part.setLength(part.getLength() - size);
-	            if(part.getLength() == 0) { //if this new free memory partition has no size, remove it
-	                partList.remove(part);
-	            }
-	            alloc = size;
-	            break;
+	    allocTable[process] = allocPart;
+	    int end = hole.getBase() + hole.getLength();
+	    removeHole(hole); //the hole's key changes, so take it out of the indexes before resizing it
+	    if(base > hole.getBase()) {
+	        //the front of the hole stays free, anything past the allocation becomes a new hole
+	        hole.setLength(base - hole.getBase());
+	        addHole(hole);
+	        link(hole, allocPart);
+	        if(base + length < end) {
+	            Partition rest = new Partition(base + length, end - base - length);
+	            link(allocPart, rest);
+	            addHole(rest);
 	        }
-	        index = (index + 1) % partList.size(); //move to the next partition, wrap around to the start if necessary
-	    } while(index != nextFitStartIndex);
-	    nextFitStartIndex = index; //update the start index for the next fit search
-	    return alloc;
+	    }
+	    else {
+	        //link the allocated partition in just below the hole it was taken from
+	        link(hole.getPrev(), allocPart);
+	        hole.setBase(base + length);
+	        hole.setLength(end - base - length);
+	        if(hole.getLength() == 0) { //if this new free memory partition has no size, remove it
+	            unlink(hole);
+	        }
+	        else {
+	            addHole(hole);
+	        }
+	    }
+	    return allocPart;
 	}
 
-	//release the processes from the memory
+	//release a process allocated by name from the memory
 	public int release(String process) {
-		if(!allocMap.containsKey(process)) {
+		Integer id = nameIds.remove(process);
+		if(id == null) {
+			return -1; //no such partition is allocated to process
+		}
+		freeNameIds = push(freeNameIds, freeNameIdCount++, id);
+		return release(id);
+	}
+
+	//release the processes from the memory
+	public int release(int process) {
+		Partition part = getPartition(process); //the table entry is the partition itself, so no search is needed
+		if(part == null) {
 			return -1; //no such partition is allocated to process
 		}
-		int size = -1;
-		for(Partition part : partList) {
-			if(!part.isbFree() && process.equals(part.getProcess())){
-				part.setbFree(true);
-				part.setProcess(null);
-				size = part.getLength();
-				break;
+		allocTable[process] = null;
+		part.setbFree(true);
+		part.setOwner(-1);
+		int size = part.getLength();
+		int base = part.getBase();
+		merge_holes(part);//merge nearby memory partitions together
+		strategy.released(base, size);
+		free += size;
+		return size;
+	}
+
+	//releases many process ids at once and stores the KB freed for processes[i] (or -1) in freed[i], returns the total
+	//every partition is marked free first and the holes are then coalesced in one pass in address order, so a run
+	//of neighbouring partitions becomes one hole with one index update instead of a merge per release
+	public long release(int[] processes, int[] freed) {
+		return release(processes, processes.length, freed);
+	}
+
+	//releases the first n process ids of the array at once, as above
+	public long release(int[] processes, int n, int[] freed) {
+		if(batch.length < n) {
+			batch = new Partition[Math.max(n, batch.length * 2)];
+			batchBases = new int[batch.length];
+			batchLengths = new int[batch.length];
+		}
+		Partition[] parts = batch;
+		int count = 0;
+		long total = 0;
+		for(int i = 0; i < n; i++) {
+			Partition part = getPartition(processes[i]);
+			if(part == null) {
+				freed[i] = -1; //not allocated, or listed twice
+				continue;
 			}
+			allocTable[processes[i]] = null;
+			part.setbFree(true);
+			part.setOwner(-1);
+			freed[i] = part.getLength();
+			total += part.getLength();
+			parts[count++] = part;
 		}
-		if(size<0) {
-			return size;
+		if(count == 0) {
+			return 0;
 		}
-		else {
-			merge_holes();//merge nearby memory partitions together
-			return size;
+		Arrays.sort(parts, 0, count, BY_BASE);
+		//the released ranges, remembered before coalescing changes the partitions
+		for(int i = 0; i < count; i++) {
+			batchBases[i] = parts[i].getBase();
+			batchLengths[i] = parts[i].getLength();
 		}
-		
+		for(int i = 0; i < count; i++) {
+			Partition hole = parts[i];
+			Partition prevPart = hole.getPrev();
+			if(prevPart != null && prevPart.isbFree()) {
+				//only an indexed hole can sit below the lowest released partition of a run
+				merges++;
+				removeHole(prevPart);
+				prevPart.setLength(prevPart.getLength() + hole.getLength());
+				unlink(hole);
+				hole = prevPart;
+			}
+			//absorb everything free above, which is either an indexed hole or the next released partition
+			for(Partition nextPart = hole.getNext(); nextPart != null && nextPart.isbFree(); nextPart = hole.getNext()) {
+				merges++;
+				if(i + 1 < count && parts[i + 1] == nextPart) {
+					i++;
+				}
+				else {
+					removeHole(nextPart);
+				}
+				hole.setLength(hole.getLength() + nextPart.getLength());
+				unlink(nextPart);
+			}
+			addHole(hole);
+		}
+		Arrays.fill(parts, 0, count, null);
+		free += total;
+		for(int i = 0; i < count; i++) {
+			strategy.released(batchBases[i], batchLengths[i]);
+		}
+		return total;
+	}
+
+	//writes the partitions in address order (base addresses follow from the lengths), the name table, the counters
+	//and the strategy's own state, for a checkpoint
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeByte(CHECKPOINT_KIND);
+		out.writeInt(size);
+		out.writeUTF(policyName());
+		ByteArrayOutputStream state = new ByteArrayOutputStream();
+		strategy.writeState(new DataOutputStream(state));
+		out.writeInt(state.size());
+		out.write(state.toByteArray());
+		int partitions = 0;
+		for(Partition part = head; part != null; part = part.getNext()) {
+			partitions++;
+		}
+		out.writeInt(partitions);
+		for(Partition part = head; part != null; part = part.getNext()) {
+			out.writeInt(part.getLength());
+			out.writeInt(part.getOwner());
+		}
+		out.writeLong(allocations);
+		out.writeLong(failures);
+		out.writeLong(relocated);
+		out.writeInt(nameIds.size());
+		for(Map.Entry<String, Integer> e : nameIds.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeInt(e.getValue());
+		}
+		out.writeInt(nextNameId);
+		out.writeInt(freeNameIdCount);
+		for(int i = 0; i < freeNameIdCount; i++) {
+			out.writeInt(freeNameIds[i]);
+		}
+	}
+
+	//contiguous memory in the state written by writeTo, after its kind byte. The partitions are linked and indexed
+	//directly rather than replayed, then the strategy is rebuilt from the holes. A fit policy name other than the
+	//saved one (null keeps it) starts that strategy fresh on the same partitions
+	static ContigousMemoryAllocator readFrom(DataInput in, String policy) throws IOException {
+		int size = in.readInt();
+		String saved = in.readUTF();
+		byte[] state = new byte[in.readInt()];
+		in.readFully(state);
+		boolean same = policy == null || policy.equals(saved);
+		if(policy != null && (policy.startsWith("paged") || policy.startsWith("compact:"))) {
+			throw new IllegalArgumentException("A checkpoint of contiguous memory cannot continue as " + policy);
+		}
+		ContigousMemoryAllocator memory = new ContigousMemoryAllocator(size, AllocationStrategy.forName(same ? saved : policy));
+		memory.head = null;
+		memory.freeHoles.clear();
+		memory.holesByBase.clear();
+		memory.free = 0;
+		Partition last = null;
+		int base = 0;
+		for(int n = in.readInt(); n > 0; n--) {
+			Partition part = new Partition(base, in.readInt());
+			int owner = in.readInt();
+			if(owner >= 0) {
+				part.setbFree(false);
+				part.setOwner(owner);
+				if(owner >= memory.allocTable.length) {
+					memory.allocTable = Arrays.copyOf(memory.allocTable, Math.max(owner + 1, memory.allocTable.length * 2));
+				}
+				memory.allocTable[owner] = part;
+			}
+			else {
+				memory.freeHoles.add(part);
+				memory.holesByBase.put(base, part);
+				memory.free += part.getLength();
+			}
+			//appending in address order, so the list is built without searching
+			part.setPrev(last);
+			if(last != null) {
+				last.setNext(part);
+			}
+			else {
+				memory.head = part;
+			}
+			last = part;
+			base += part.getLength();
+		}
+		if(base != size) {
+			throw new IOException("Checkpoint partitions cover " + base + " KB of " + size + " KB");
+		}
+		memory.allocations = in.readLong();
+		memory.failures = in.readLong();
+		memory.relocated = in.readLong();
+		for(int n = in.readInt(); n > 0; n--) {
+			memory.nameIds.put(in.readUTF(), in.readInt());
+		}
+		memory.nextNameId = in.readInt();
+		memory.freeNameIdCount = in.readInt();
+		memory.freeNameIds = new int[Math.max(16, memory.freeNameIdCount)];
+		for(int i = 0; i < memory.freeNameIdCount; i++) {
+			memory.freeNameIds[i] = in.readInt();
+		}
+		memory.strategy.reset(memory);
+		if(same) {
+			memory.strategy.readState(new DataInputStream(new ByteArrayInputStream(state)));
+		}
+		return memory;
+	}
+
+	//short name of the strategy, as AllocationStrategy.forName takes it
+	private String policyName() {
+		for(String name : AllocationStrategy.NAMES) {
+			if(AllocationStrategy.forName(name).getClass() == strategy.getClass()) {
+				return name;
+			}
+		}
+		throw new IllegalStateException("Cannot checkpoint a strategy with no short name: " + strategy.getName());
+	}
+
+	//slides every allocated partition down to the bottom of memory so all the free memory becomes one hole
+	//returns the KB moved
+	public int compact() {
+		return compact(Integer.MAX_VALUE);
+	}
+
+	//slides allocated partitions down into the lowest hole one at a time, stopping once at least maxKB have been moved
+	//(partitions are always moved whole) or all the free memory is one hole at the top. Returns the KB moved
+	public int compact(int maxKB) {
+		int moved = 0;
+		Map.Entry<Integer, Partition> lowest = holesByBase.firstEntry();
+		if(lowest == null) {
+			return 0;
+		}
+		Partition hole = lowest.getValue();
+		//the lowest hole stays the lowest as it bubbles up, absorbing every hole it runs into
+		while(moved < maxKB && hole.getNext() != null) {
+			Partition part = hole.getNext();
+			removeHole(hole);
+			unlink(hole);
+			part.setBase(hole.getBase());
+			hole.setBase(part.getBase() + part.getLength());
+			link(part, hole);
+			Partition nextPart = hole.getNext();
+			if(nextPart != null && nextPart.isbFree()) {
+				removeHole(nextPart);
+				hole.setLength(hole.getLength() + nextPart.getLength());
+				unlink(nextPart);
+			}
+			addHole(hole);
+			moved += part.getLength();
+		}
+		if(moved > 0) {
+			relocated += moved;
+			strategy.compacted(this);
+		}
+		return moved;
 	}      
 	
-	//merges the adjacent holes in the memory
-	private void merge_holes() {
-	    order_partitions(); //order partitions based on increase base address
-	    int i = 0;
-	    while(i < partList.size()) {
-	        Partition part = partList.get(i);
-	        if(part.isbFree()) {
-	            int endAddr = part.getBase() + part.getLength();
-	            int j = i + 1;
-	            while(j < partList.size()) {
-	                Partition nextPart = partList.get(j);
-	                if(nextPart.isbFree() && nextPart.getBase() == endAddr) {
-	                    // Merge the next partition into the current one
-	                    part.setLength(part.getLength() + nextPart.getLength());
-	                    // Remove the next partition from the list
-	                    partList.remove(j);
-	                    //checks to see if the nextfit index is out of bounds
-	                    if(nextFitStartIndex >= partList.size()) {
-	                    	nextFitStartIndex = partList.size()-1;
-	                    }
-	                    // Update the end address
-	                    endAddr = part.getBase() + part.getLength();
-	                } else {
-	                    // Stop merging when the next partition is not free or not adjacent
-	                    break;
-	                }
-	            }
-	        }
-	        i++;
+	//merges a freshly freed partition with the free partitions directly next to it
+	private void merge_holes(Partition part) {
+	    Partition prevPart = part.getPrev();
+	    Partition nextPart = part.getNext();
+	    if(nextPart != null && nextPart.isbFree()) {
+	        // absorb the following hole into this partition
+	        merges++;
+	        removeHole(nextPart);
+	        part.setLength(part.getLength() + nextPart.getLength());
+	        unlink(nextPart);
+	    }
+	    if(prevPart != null && prevPart.isbFree()) {
+	        // let the preceding hole absorb this partition, re-keying it in the hole indexes
+	        merges++;
+	        removeHole(prevPart);
+	        prevPart.setLength(prevPart.getLength() + part.getLength());
+	        unlink(part);
+	        part = prevPart;
+	    }
+	    addHole(part);
+	}
+
+	//stores value at index of a stack array, growing the array when it is full
+	private static int[] push(int[] stack, int index, int value) {
+	    if(index == stack.length) {
+	        stack = Arrays.copyOf(stack, stack.length * 2);
+	    }
+	    stack[index] = value;
+	    return stack;
+	}
+
+	//puts a free partition into the hole indexes and tells the strategy about it
+	private void addHole(Partition hole) {
+	    freeHoles.add(hole);
+	    holesByBase.put(hole.getBase(), hole);
+	    strategy.holeAdded(hole);
+	}
+
+	//takes a free partition out of the hole indexes, must be called before its base or length changes
+	private void removeHole(Partition hole) {
+	    freeHoles.remove(hole);
+	    holesByBase.remove(hole.getBase());
+	    strategy.holeRemoved(hole);
+	}
+
+	//links a partition into the list right after another one (or at the front when prevPart is null)
+	private void link(Partition prevPart, Partition part) {
+	    Partition nextPart = prevPart != null ? prevPart.getNext() : head;
+	    part.setPrev(prevPart);
+	    part.setNext(nextPart);
+	    if(prevPart != null) {
+	        prevPart.setNext(part);
+	    }
+	    else {
+	        head = part;
+	    }
+	    if(nextPart != null) {
+	        nextPart.setPrev(part);
+	    }
+	}
+
+	//removes a partition from the linked list
+	private void unlink(Partition part) {
+	    if(part.getPrev() != null) {
+	        part.getPrev().setNext(part.getNext());
+	    }
+	    else {
+	        head = part.getNext();
+	    }
+	    if(part.getNext() != null) {
+	        part.getNext().setPrev(part.getPrev());
 	    }
 	}
 
-	//main method to drive the program
+	//main method to drive the program, runs headless (see HeadlessRunner) when given any arguments
 	public static void main(String[] args) {
-		//makes variables to store the info off the txt file
-		int MEMORY_MAX = 0;
-        int PROC_SIZE_MAX = 0;
-        int NUM_PROC = 0;
-        int MAX_PROC_TIME = 0;
-        //connects to the file and reads off the informations and assigns it to the appropriate integer 
+		if(args.length > 0) {
+			HeadlessRunner.main(args);
+			return;
+		}
+		//reads the limits off the info file, which must exist rather than silently leaving them at zero
+		SimulationConfig config = new SimulationConfig();
+		Path info = Files.exists(Paths.get("src/info.txt")) ? Paths.get("src/info.txt") : Paths.get("info.txt");
 		try {
-            File file = new File("src/info.txt");
-            Scanner scanner = new Scanner(file);
-           
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] parts = line.split(" = ");
-
-                switch (parts[0]) {
-                    case "MEMORY_MAX":
-                        MEMORY_MAX = Integer.parseInt(parts[1]);
-                        break;
-                    case "PROC_SIZE_MAX":
-                        PROC_SIZE_MAX = Integer.parseInt(parts[1]);
-                        break;
-                    case "NUM_PROC":
-                        NUM_PROC = Integer.parseInt(parts[1]);
-                        break;
-                    case "MAX_PROC_TIME":
-                        MAX_PROC_TIME = Integer.parseInt(parts[1]);
-                        break;
-                }
-            }
-            scanner.close();
-        } catch (FileNotFoundException e) {
-            System.out.println("An error occurred.");
-            e.printStackTrace();
-        }
-		//initializes an array list of processes
-		List<Process> processes = new ArrayList<>();
-		Random rand = new Random();
-
-		//creates the allowed amount of processes and generates a random size and time within the limit
-		for (int i = 0; i < NUM_PROC; i++) {
-		    String name = "P" + (i + 1);
-		    int size = rand.nextInt(PROC_SIZE_MAX) + 1; // random size between 1 and PROC_SIZE_MAX
-		    int time = rand.nextInt(MAX_PROC_TIME) + 1; // random time between 1 and MAX_PROC_TIME
-		    processes.add(new Process(name, size, time));
+			config.load(info);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("Could not read " + info + ": " + e);
+			System.exit(HeadlessRunner.IO_ERROR);
 		}
+		int MEMORY_MAX = config.getMemory();
+		int PROC_SIZE_MAX = config.getSizeMax();
+		int NUM_PROC = config.getProcs();
+		int MAX_PROC_TIME = config.getTime();
+		//creates the allowed amount of processes and generates a random size and time within the limit
+		List<Process> processes = WorkloadGenerator.generate(new Random().nextLong(), NUM_PROC, PROC_SIZE_MAX, MAX_PROC_TIME);
 		
-		//starts the memory with the allowed memory size
-		ContigousMemoryAllocator allocator = new ContigousMemoryAllocator(MEMORY_MAX);
-
 		double stime = 0;
 		double etime = 0;
 		
 		//Allows the user to choose which version of memory allocation they want to use
         Scanner scn = new Scanner(System.in);
-        System.out.print("Which version would you like to do?\nBest Fit [1]\nWorst fit [2]\nNext fit [3]\n::");
-        int mode = scn.nextInt();
-       
-        //user chose Best Fit
-        if(mode == 1) {
-        	System.out.println("You have chosen best fit.");
-        	//sets start time of program
-        	stime = System.currentTimeMillis();
-        	//makes a queue for the waiting processes
-        	Queue<Process> waitingQueue = new LinkedList<>();
-        	//goes through the process and finds if they can fit in a memory hole; if not the process is sent to the waiting queue
-        	for (Process process : processes) {
-        	    int allocatedSize = allocator.best_fit(process.getName(), process.getSize());
-        	    if (allocatedSize == -1) {
-        	    	System.out.println("\n------------------------------------------------------------------------------"
-        					+ "-------------------------------------------------------------------------------------------"
-        					+ "---------------------------------------------------------------------------------------------");
-        	        System.out.println("\nFailed to allocate memory for process " + process.getName() + ", putting it on hold.");
-        	        waitingQueue.add(process);
-        	    } else {
-        	    	System.out.println("\n------------------------------------------------------------------------------"
-        					+ "-------------------------------------------------------------------------------------------"
-        					+ "---------------------------------------------------------------------------------------------");
-        	        System.out.println("\nAllocated " + allocatedSize + "KB memory for process " + process.getName());
-        	    }
-        	}
-        	
-        	int tickCounter = 0;
-        	//runs while both array lists have an item in them and ticks down the time for each process and releases when time hits zero
-        	while (!processes.isEmpty() || !waitingQueue.isEmpty()) {
-        		//creates an iterator to iterate over the collection of processes
-        	    Iterator<Process> iterator = processes.iterator();
-        	    while (iterator.hasNext()) {
-        	        Process process = iterator.next();
-        	        if (process.getTime() == 0) {
-        	            // Release the process from memory if it is out of time
-        	            int releasedSize = allocator.release(process.getName());
-        	            if (releasedSize != -1) {
-        	            	System.out.println("\n------------------------------------------------------------------------------"
-        	        				+ "-------------------------------------------------------------------------------------------"
-        	        				+ "---------------------------------------------------------------------------------------------");
-        	                System.out.println("\nReleased " + releasedSize + "KB memory from process " + process.getName());
-        	            }
-        	            // Remove the process from the list
-        	            iterator.remove();
-        	        } else {
-        	            // Decrease the process's time 
-        	            process.setTime(process.getTime() - 1);
-        	        }
-        	    }
-
-        	    // Try to allocate memory for the processes on hold
-        	    iterator = waitingQueue.iterator();
-        	    while (iterator.hasNext()) {
-        	        Process process = iterator.next();
-        	        int allocatedSize = allocator.best_fit(process.getName(), process.getSize());
-        	        if (allocatedSize != -1) {
-        	        	System.out.println("\n------------------------------------------------------------------------------"
-        	    				+ "-------------------------------------------------------------------------------------------"
-        	    				+ "---------------------------------------------------------------------------------------------");
-        	            System.out.println("\nAllocated " + allocatedSize + "KB memory for process " + process.getName());
-        	            processes.add(process);
-        	            iterator.remove();
-        	        }
-        	    }
-
-        	    // Increment the tick counter
-        	    tickCounter++;
-
-        	    // Print the status of the memory allocation every 1000 ticks (1 "second")
-        	    if (tickCounter == 1000) {
-        	        allocator.print_status(processes);
-        	        allocator.printMemoryStats();
-        	        tickCounter = 0;  // Reset the tick counter
-        	    }
-        	}
-        	//posts the time it took the algorithm to run
-        	etime = System.currentTimeMillis();
-        	allocator.print_status(processes);
-        	System.out.println("\n------------------------------------------------------------------------------"
-    				+ "-------------------------------------------------------------------------------------------"
-    				+ "---------------------------------------------------------------------------------------------");
-        	System.out.println("\nThe time to execute best fit is " + (etime - stime) + "ms");
-        	System.out.println("\n------------------------------------------------------------------------------"
-    				+ "-------------------------------------------------------------------------------------------"
-    				+ "---------------------------------------------------------------------------------------------");
-        }
-        else if(mode == 2) {
-        	System.out.println("You have chosen worst fit.");
-        	stime = System.currentTimeMillis();
-        	Queue<Process> waitingQueue = new LinkedList<>();
-        	for (Process process : processes) {
-        	    int allocatedSize = allocator.worst_fit(process.getName(), process.getSize());
-        	    if (allocatedSize == -1) {
-        	    	System.out.println("\n------------------------------------------------------------------------------"
-        					+ "-------------------------------------------------------------------------------------------"
-        					+ "---------------------------------------------------------------------------------------------");
-        	        System.out.println("\nFailed to allocate memory for process " + process.getName() + ", putting it on hold.");
-        	        waitingQueue.add(process);
-        	    } else {
-        	    	System.out.println("\n------------------------------------------------------------------------------"
-        					+ "-------------------------------------------------------------------------------------------"
-        					+ "---------------------------------------------------------------------------------------------");
-        	        System.out.println("\nAllocated " + allocatedSize + "KB memory for process " + process.getName());
-        	    }
-        	}
-        	int tickCounter = 0;
-
-        	while (!processes.isEmpty() || !waitingQueue.isEmpty()) {
-        	    // Tick down the time for each process and release it if its time is up
-        	    Iterator<Process> iterator = processes.iterator();
-        	    while (iterator.hasNext()) {
-        	        Process process = iterator.next();
-        	        if (process.getTime() == 0) {
-        	            // Release the process from memory
-        	            int releasedSize = allocator.release(process.getName());
-        	            if (releasedSize != -1) {
-        	            	System.out.println("\n------------------------------------------------------------------------------"
-        	        				+ "-------------------------------------------------------------------------------------------"
-        	        				+ "---------------------------------------------------------------------------------------------");
-        	                System.out.println("\nReleased " + releasedSize + "KB memory from process " + process.getName());
-        	            }
-        	            // Remove the process from the list
-        	            iterator.remove();
-        	        } else {
-        	            // Decrease the process's time
-        	            process.setTime(process.getTime() - 1);
-        	        }
-        	    }
-
-        	    // Try to allocate memory for the processes on hold
-        	    iterator = waitingQueue.iterator();
-        	    while (iterator.hasNext()) {
-        	        Process process = iterator.next();
-        	        int allocatedSize = allocator.worst_fit(process.getName(), process.getSize());
-        	        if (allocatedSize != -1) {
-        	        	System.out.println("\n------------------------------------------------------------------------------"
-        	    				+ "-------------------------------------------------------------------------------------------"
-        	    				+ "---------------------------------------------------------------------------------------------");
-        	            System.out.println("\nAllocated " + allocatedSize + "KB memory for process " + process.getName());
-        	            processes.add(process);
-        	            iterator.remove();
-        	        }
-        	    }
-
-        	    // Increment the tick counter
-        	    tickCounter++;
-
-        	    // Print the status of the memory allocation every 1000 ticks
-        	    if (tickCounter == 1000) {
-        	        allocator.print_status(processes);
-        	        allocator.printMemoryStats();
-        	        tickCounter = 0;  // Reset the tick counter
-        	    }
-        	}
-        	etime = System.currentTimeMillis();
-        	allocator.print_status(processes);
-        	System.out.println("\n------------------------------------------------------------------------------"
-    				+ "-------------------------------------------------------------------------------------------"
-    				+ "---------------------------------------------------------------------------------------------");
-        	System.out.println("\nThe time to execute with worst fit is " + (etime-stime) + "ms");
-        	System.out.println("\n------------------------------------------------------------------------------"
-    				+ "-------------------------------------------------------------------------------------------"
-    				+ "---------------------------------------------------------------------------------------------");
-        }
-        else if(mode == 3) {
-        	System.out.println("You have chosen next fit.");
-        	stime = System.currentTimeMillis();
-        	Queue<Process> waitingQueue = new LinkedList<>();
-        	for (Process process : processes) {
-        	    int allocatedSize = allocator.next_fit(process.getName(), process.getSize());
-        	    if (allocatedSize == -1) {
-        	    	System.out.println("\n------------------------------------------------------------------------------"
-        					+ "-------------------------------------------------------------------------------------------"
-        					+ "---------------------------------------------------------------------------------------------");
-        	        System.out.println("\nFailed to allocate memory for process " + process.getName() + ", putting it on hold.");
-        	        waitingQueue.add(process);
-        	    } else {
-        	    	System.out.println("\n------------------------------------------------------------------------------"
-        					+ "-------------------------------------------------------------------------------------------"
-        					+ "---------------------------------------------------------------------------------------------");
-        	        System.out.println("\nAllocated " + allocatedSize + "KB memory for process " + process.getName());
-        	    }
-        	}
-        	int tickCounter = 0;
-
-        	while (!processes.isEmpty() || !waitingQueue.isEmpty()) {
-        	    // Tick down the time for each process and release it if its time is up
-        	    Iterator<Process> iterator = processes.iterator();
-        	    while (iterator.hasNext()) {
-        	        Process process = iterator.next();
-        	        if (process.getTime() == 0) {
-        	            // Release the process from memory
-        	            int releasedSize = allocator.release(process.getName());
-        	            if (releasedSize != -1) {
-        	            	System.out.println("\n------------------------------------------------------------------------------"
-        	        				+ "-------------------------------------------------------------------------------------------"
-        	        				+ "---------------------------------------------------------------------------------------------");
-        	                System.out.println("\nReleased " + releasedSize + "KB memory from process " + process.getName());
-        	            }
-        	            // Remove the process from the list
-        	            iterator.remove();
-        	        } else {
-        	            // Decrease the process's time
-        	            process.setTime(process.getTime() - 1);
-        	        }
-        	    }
-
-        	    // Try to allocate memory for the processes on hold
-        	    iterator = waitingQueue.iterator();
-        	    while (iterator.hasNext()) {
-        	        Process process = iterator.next();
-        	        int allocatedSize = allocator.next_fit(process.getName(), process.getSize());
-        	        if (allocatedSize != -1) {
-        	        	System.out.println("\n------------------------------------------------------------------------------"
-        	    				+ "-------------------------------------------------------------------------------------------"
-        	    				+ "---------------------------------------------------------------------------------------------");
-        	            System.out.println("\nAllocated " + allocatedSize + "KB memory for process " + process.getName());
-        	            processes.add(process);
-        	            iterator.remove();
-        	        }
-        	    }
-        	    // Increment the tick counter
-        	    tickCounter++;
-
-        	    // Print the status of the memory allocation every 1000 ticks
-        	    if (tickCounter == 1000) {
-        	        allocator.print_status(processes);
-        	        allocator.printMemoryStats();
-        	        tickCounter = 0;  // Reset the tick counter
-        	    }
-        	}
-        	etime = System.currentTimeMillis();
-        	allocator.print_status(processes);
-        	System.out.println("\n------------------------------------------------------------------------------"
-    				+ "-------------------------------------------------------------------------------------------"
-    				+ "---------------------------------------------------------------------------------------------");
-        	System.out.println("\nThe time to execute with next fit is " + (etime - stime) + "ms");
-        	System.out.println("\n------------------------------------------------------------------------------"
-    				+ "-------------------------------------------------------------------------------------------"
-    				+ "---------------------------------------------------------------------------------------------");
-        }
-        //user did not input a valid option and must restart
-        else {
-        	System.out.println("Please restart the program and choose a valid option.");
+        System.out.print("Which version would you like to do?\nBest Fit [1]\nWorst fit [2]\nNext fit [3]\nSegregated fit [4]\nBuddy system [5]\nLifetime fit [6]\n::");
+        int mode = scn.hasNextInt() ? scn.nextInt() : 0;
+        if(mode < 1 || mode > AllocationStrategy.NAMES.length) {
+            //user did not input a valid option and must restart
+            System.out.println("Please restart the program and choose a valid option.");
+            return;
         }
+        AllocationStrategy strategy = AllocationStrategy.forName(AllocationStrategy.NAMES[mode - 1]);
+
+		//starts the memory with the allowed memory size
+		ContigousMemoryAllocator allocator = new ContigousMemoryAllocator(MEMORY_MAX, strategy);
+
+        System.out.println("You have chosen " + strategy.getName() + ".");
+        //sets start time of program
+        stime = System.currentTimeMillis();
+        //runs the processes through memory until all of them have been released
+        Simulation simulation = new Simulation(allocator);
+        simulation.run(processes);
+        //posts the time it took the algorithm to run
+        etime = System.currentTimeMillis();
+        allocator.print_status(simulation.getRegistry());
+        System.out.println(BANNER);
+        System.out.println("\nThe time to execute with " + strategy.getName() + " is " + (etime - stime) + "ms");
+        System.out.println(BANNER);
 	}
 }
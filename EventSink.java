@@ -0,0 +1,19 @@
+//where a simulation's event and status text goes
+//text arrives fully formatted, line breaks included, and may be a reused buffer that is only valid during the call
+public interface EventSink extends AutoCloseable {
+
+	//sink that throws everything away
+	EventSink NONE = text -> {
+	};
+
+	void write(CharSequence text);
+
+	//pushes out anything still buffered
+	default void flush() {
+	}
+
+	//flushes and releases whatever the sink writes to
+	default void close() {
+		flush();
+	}
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.util.List;
+
+//runs one simulation from arguments or a properties file without any prompts, so scripts can run it in a loop
+//usage: java HeadlessRunner [config=<properties file>] [policy=best|worst|next|segregated|buddy|lifetime|paged[:<page KB>]]
+//                           [policy=compact:<best|worst>[:offheap]]
+//                           [policy=shards:<affinity|least_loaded|largest_hole>:<policy>[@<weight>]+...]
+//                           [seed=1] [memory=1024] [procs=10] [sizeMax=100]
+//                           [time=10000] [sizes=uniform|fixed|exponential|power_law|bimodal] [lifetimes=<same>]
+//                           [arrivals=batch|poisson|bursty] [gap=10]
+//                           [admission=first_fit|fifo|smallest_first] [compaction=none] [output=summary|csv|json|events]
+//                           [sink=direct|async] [header=true] [instrument=false]
+//batch arrivals run a generated list; poisson and bursty stream the processes in as they arrive, gap ticks apart on
+//average, so a run of millions of processes holds only the ones running or waiting
+//sink=async writes the events of output=events from a background thread, so the simulation does not wait on stdout
+//instrument=true also prints allocate and release latency percentiles to stderr, keeping stdout one result
+//exit status: 0 every process ran, 1 the config file could not be read, 2 bad arguments, 3 some processes never fit
+public class HeadlessRunner {
+	public static final int OK = 0;
+	public static final int IO_ERROR = 1;
+	public static final int USAGE = 2;
+	public static final int STUCK = 3;
+
+	private static final String[] COLUMNS = {"policy", "seed", "memory", "procs", "sizeMax", "time", "compaction",
+			"makespan", "waited", "avg_wait", "max_queue", "stuck", "avg_holes", "relocated_kb", "ms"};
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	//runs the simulation the arguments describe and returns the exit status
+	public static int run(String[] args) {
+		SimulationConfig config;
+		try {
+			config = SimulationConfig.fromArgs(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return USAGE;
+		} catch (IOException e) {
+			System.err.println("Could not read config: " + e);
+			return IO_ERROR;
+		}
+		//a stream is drawn while it runs, so only a list is generated before the clock starts
+		List<Process> processes = config.getArrivals() == WorkloadGenerator.Arrivals.BATCH ? config.workload() : null;
+		Simulation sim = config.simulation();
+		EventSink events = EventSink.NONE;
+		if (config.getOutput() == SimulationConfig.Output.EVENTS) {
+			events = config.eventSink();
+			sim.setOutput(events, Simulation.Verbosity.EVENTS);
+		}
+		else {
+			sim.setOutput(EventSink.NONE, Simulation.Verbosity.QUIET);
+		}
+		long start = System.nanoTime();
+		try {
+			if (processes != null) {
+				sim.run(processes);
+			}
+			else {
+				sim.run(config.stream());
+			}
+		} finally {
+			//every event is out before the summary line
+			events.close();
+		}
+		long nanos = System.nanoTime() - start;
+
+		Object[] values = {config.getPolicy(), config.getSeed(), config.getMemory(), config.getProcs(), config.getSizeMax(),
+				config.getTime(), config.getCompaction(), sim.getTicks(), sim.getWaited(),
+				config.getProcs() > 0 ? (double) sim.getTotalWait() / config.getProcs() : 0.0, sim.getMaxWaiting(),
+				sim.getStuck(), sim.getAverageHoles(), sim.getRelocated(), nanos / 1e6};
+		StringBuilder out = new StringBuilder();
+		switch (config.getOutput()) {
+			case CSV:
+				if (config.isHeader()) {
+					out.append(String.join(",", COLUMNS)).append('\n');
+				}
+				for (int i = 0; i < values.length; i++) {
+					out.append(i > 0 ? "," : "").append(values[i]);
+				}
+				break;
+			case JSON:
+				out.append('{');
+				for (int i = 0; i < values.length; i++) {
+					out.append(i > 0 ? "," : "").append('"').append(COLUMNS[i]).append("\":");
+					if (values[i] instanceof String) {
+						out.append('"').append(values[i]).append('"');
+					}
+					else {
+						out.append(values[i]);
+					}
+				}
+				out.append('}');
+				break;
+			default:
+				for (int i = 0; i < values.length; i++) {
+					out.append(i > 0 ? " " : "").append(COLUMNS[i]).append('=').append(values[i]);
+				}
+				break;
+		}
+		System.out.println(out);
+		if (sim.getAllocator() instanceof InstrumentedMemory) {
+			StringBuilder report = new StringBuilder();
+			((InstrumentedMemory) sim.getAllocator()).appendReport(report);
+			System.err.print(report);
+		}
+		return sim.getStuck() > 0 ? STUCK : OK;
+	}
+}
@@ -0,0 +1,123 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+//counts non-negative values in log-linear buckets like HdrHistogram, so recording is O(1) with no allocation and
+//the memory is fixed. Values below 128 are counted exactly; above that every power of two is split into 64 equal
+//buckets, so a percentile is never more than 1/64 (under 1.6%) above the true value
+public class Histogram {
+	private static final int SUB_BITS = 6; //log2 of the buckets per power of two
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT + SUB_COUNT;
+
+	private long[] buckets = new long[BUCKETS];
+	private int highest; //highest bucket with a count
+	private long count;
+	private long sum;
+	private long max;
+
+	//adds one value, negative values count as 0
+	public void record(long value) {
+		value = Math.max(value, 0);
+		int bucket = bucketOf(value);
+		buckets[bucket]++;
+		highest = Math.max(highest, bucket);
+		count++;
+		sum += value;
+		max = Math.max(max, value);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count > 0 ? (double) sum / count : 0;
+	}
+
+	//highest value at or below the given percentile (0 to 100) of the values, rounded up to the top of its bucket
+	//and never more than the max
+	public long percentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int b = 0; b <= highest; b++) {
+			seen += buckets[b];
+			if (seen >= rank) {
+				return Math.min(max, highestIn(b));
+			}
+		}
+		return max;
+	}
+
+	//adds every value of another histogram to this one
+	public void add(Histogram other) {
+		for (int b = 0; b <= other.highest; b++) {
+			buckets[b] += other.buckets[b];
+		}
+		highest = Math.max(highest, other.highest);
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	//writes the counts for a checkpoint, only the buckets up to the highest one in use
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(highest + 1);
+		for (int b = 0; b <= highest; b++) {
+			out.writeLong(buckets[b]);
+		}
+		out.writeLong(count);
+		out.writeLong(sum);
+		out.writeLong(max);
+	}
+
+	//a histogram with the counts written by writeTo
+	public static Histogram readFrom(DataInput in) throws IOException {
+		Histogram histogram = new Histogram();
+		int used = in.readInt();
+		for (int b = 0; b < used; b++) {
+			histogram.buckets[b] = in.readLong();
+		}
+		histogram.highest = Math.max(0, used - 1);
+		histogram.count = in.readLong();
+		histogram.sum = in.readLong();
+		histogram.max = in.readLong();
+		return histogram;
+	}
+
+	public void clear() {
+		Arrays.fill(buckets, 0, highest + 1, 0);
+		highest = 0;
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	//values below 2 * SUB_COUNT have a bucket each, above that the top SUB_BITS + 1 bits pick the bucket
+	private static int bucketOf(long value) {
+		if (value < 2 * SUB_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return shift * SUB_COUNT + (int) (value >>> shift);
+	}
+
+	//the highest value that falls in a bucket
+	private static long highestIn(int bucket) {
+		if (bucket < 2 * SUB_COUNT) {
+			return bucket;
+		}
+		int shift = bucket / SUB_COUNT - 1;
+		long sub = bucket - shift * SUB_COUNT;
+		long top = ((sub + 1) << shift) - 1;
+		return top < 0 ? Long.MAX_VALUE : top; //the last bucket runs to the largest long
+	}
+}
@@ -0,0 +1,172 @@
+import java.io.DataOutput;
+import java.io.IOException;
+
+//wraps memory to time every allocate and release and record how much each one searched and merged, per kind of
+//operation, in histograms that can be read while the run goes on. Instrumentation is opt-in: memory that is not
+//wrapped pays nothing, and wrapped memory pays two System.nanoTime calls and a few counter updates per operation
+public class InstrumentedMemory implements MemoryManager {
+
+	//kinds of operation that are measured separately
+	public enum Op {
+		ALLOCATE,       //allocations that found room
+		ALLOCATE_FAIL,  //allocations that did not
+		RELEASE,        //single releases
+		RELEASE_BATCH   //batch releases, timed as a whole
+	}
+
+	private MemoryManager memory;
+	private Histogram[] latency = new Histogram[Op.values().length]; //nanoseconds per operation
+	private Histogram[] scanned = new Histogram[Op.values().length]; //holes, block sizes or words searched per allocation
+	private Histogram[] merged = new Histogram[Op.values().length]; //holes merged per release
+
+	// constructor
+	public InstrumentedMemory(MemoryManager memory) {
+		this.memory = memory;
+		for (int i = 0; i < latency.length; i++) {
+			latency[i] = new Histogram();
+			scanned[i] = new Histogram();
+			merged[i] = new Histogram();
+		}
+	}
+
+	//the memory being measured
+	public MemoryManager getMemory() {
+		return memory;
+	}
+
+	//latencies in nanoseconds of one kind of operation
+	public Histogram getLatency(Op op) {
+		return latency[op.ordinal()];
+	}
+
+	//search lengths of one kind of allocation
+	public Histogram getScanned(Op op) {
+		return scanned[op.ordinal()];
+	}
+
+	//merges done by one kind of release
+	public Histogram getMerged(Op op) {
+		return merged[op.ordinal()];
+	}
+
+	public int allocate(int process, int size) {
+		return allocate(process, size, -1);
+	}
+
+	public int allocate(int process, int size, int lifetime) {
+		long start = System.nanoTime();
+		int allocated = memory.allocate(process, size, lifetime);
+		long nanos = System.nanoTime() - start;
+		Op op = allocated == -1 ? Op.ALLOCATE_FAIL : Op.ALLOCATE;
+		latency[op.ordinal()].record(nanos);
+		scanned[op.ordinal()].record(memory.lastScanned());
+		return allocated;
+	}
+
+	public int release(int process) {
+		long merges = memory.getMerges();
+		long start = System.nanoTime();
+		int freed = memory.release(process);
+		long nanos = System.nanoTime() - start;
+		latency[Op.RELEASE.ordinal()].record(nanos);
+		merged[Op.RELEASE.ordinal()].record(memory.getMerges() - merges);
+		return freed;
+	}
+
+	public long release(int[] processes, int n, int[] freed) {
+		long merges = memory.getMerges();
+		long start = System.nanoTime();
+		long total = memory.release(processes, n, freed);
+		long nanos = System.nanoTime() - start;
+		latency[Op.RELEASE_BATCH.ordinal()].record(nanos);
+		merged[Op.RELEASE_BATCH.ordinal()].record(memory.getMerges() - merges);
+		return total;
+	}
+
+	//appends one line per kind of operation that happened: count, latency percentiles in nanoseconds, and the
+	//average and largest search or merge count
+	public void appendReport(StringBuilder out) {
+		out.append(String.format("%-14s %10s %10s %10s %10s %12s %10s %10s%n",
+				"operation", "count", "p50 ns", "p99 ns", "p99.9 ns", "max ns", "avg work", "max work"));
+		for (Op op : Op.values()) {
+			Histogram times = latency[op.ordinal()];
+			if (times.getCount() == 0) {
+				continue;
+			}
+			//allocations report the search, releases the merges
+			Histogram work = op == Op.ALLOCATE || op == Op.ALLOCATE_FAIL ? scanned[op.ordinal()] : merged[op.ordinal()];
+			out.append(String.format("%-14s %10d %10d %10d %10d %12d %10.2f %10d%n", op.name().toLowerCase(),
+					times.getCount(), times.percentile(50), times.percentile(99), times.percentile(99.9),
+					times.getMax(), work.getMean(), work.getMax()));
+		}
+	}
+
+	public String getName() {
+		return memory.getName();
+	}
+
+	public int getSize() {
+		return memory.getSize();
+	}
+
+	public int getFreeMemory() {
+		return memory.getFreeMemory();
+	}
+
+	public int reserve(int size) {
+		return memory.reserve(size);
+	}
+
+	public int largestFree() {
+		return memory.largestFree();
+	}
+
+	public int compact(int maxKB) {
+		return memory.compact(maxKB);
+	}
+
+	public long getRelocated() {
+		return memory.getRelocated();
+	}
+
+	public int lastScanned() {
+		return memory.lastScanned();
+	}
+
+	public long getMerges() {
+		return memory.getMerges();
+	}
+
+	public int getHoleCount() {
+		return memory.getHoleCount();
+	}
+
+	public double averageHole() {
+		return memory.averageHole();
+	}
+
+	public double fragmentation() {
+		return memory.fragmentation();
+	}
+
+	public long getAllocations() {
+		return memory.getAllocations();
+	}
+
+	public long getFailures() {
+		return memory.getFailures();
+	}
+
+	public void appendStatus(ProcessRegistry processes, StringBuilder out) {
+		memory.appendStatus(processes, out);
+	}
+
+	public void appendMemoryStats(StringBuilder out) {
+		memory.appendMemoryStats(out);
+	}
+
+	//the measurements are not part of a checkpoint, only the memory itself
+	public void writeTo(DataOutput out) throws IOException {
+		memory.writeTo(out);
+	}
+}
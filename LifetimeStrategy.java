@@ -0,0 +1,64 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+//places requests by how long they will hold memory: short-lived ones in the lowest hole that fits, from the bottom
+//of memory up, and long-lived ones at the top of the highest hole that fits, from the top down. Processes that end
+//around the same time then sit next to each other, so the holes they leave merge instead of staying pinned
+//between long-lived partitions. A request is long-lived when its lifetime is above the average seen so far
+public class LifetimeStrategy implements AllocationStrategy {
+	private ContigousMemoryAllocator memory;
+	private long requests; //requests with a known lifetime so far
+	private long lifetimeSum; //their lifetimes summed
+	private int scanned; //holes the last search looked at
+
+	public String getName() {
+		return "lifetime fit";
+	}
+
+	public void reset(ContigousMemoryAllocator memory) {
+		this.memory = memory;
+	}
+
+	//without a lifetime a request is treated as short-lived
+	public int place(int size) {
+		return place(size, -1);
+	}
+
+	public int place(int size, int lifetime) {
+		scanned = 0;
+		if(memory.largestHoleSize() < size) {
+			return -1; //nothing fits, so the holes need not be searched
+		}
+		boolean longLived = false;
+		if(lifetime >= 0) {
+			//compared before this request counts, so the first one is short-lived
+			longLived = requests > 0 && (long) lifetime * requests > lifetimeSum;
+			requests++;
+			lifetimeSum += lifetime;
+		}
+		Iterable<Partition> holes = longLived ? memory.getHoles().descendingMap().values() : memory.getHoles().values();
+		for(Partition hole : holes) {
+			scanned++;
+			if(hole.getLength() >= size) {
+				return longLived ? hole.getBase() + hole.getLength() - size : hole.getBase();
+			}
+		}
+		return -1;
+	}
+
+	public int lastScanned() {
+		return scanned;
+	}
+
+	//the average lifetime is part of the state, the rest follows from the holes
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(requests);
+		out.writeLong(lifetimeSum);
+	}
+
+	public void readState(DataInput in) throws IOException {
+		requests = in.readLong();
+		lifetimeSum = in.readLong();
+	}
+}
@@ -0,0 +1,134 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+//the locking shared by memory split into independent regions, ConcurrentAllocator's arenas and ShardedMemory's shards:
+//a lock per region and a map from each process key to the region holding its memory. An allocation claims its key
+//first, so the same process cannot be allocated twice at once, then tries the regions in turn
+public class LockedRegions<K> {
+	private static final int PENDING = -1; //owner entry of a process whose allocation is still in progress
+
+	//an allocation on one region, made with its lock held, returning the KB reserved or -1
+	public interface Attempt {
+		int allocate(int region);
+	}
+
+	private ReentrantLock[] locks;
+	private ConcurrentHashMap<K, Integer> owner = new ConcurrentHashMap<>(); //process key to the region holding its memory
+
+	// constructor
+	public LockedRegions(int count) {
+		locks = new ReentrantLock[count];
+		for (int i = 0; i < count; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	public int getCount() {
+		return locks.length;
+	}
+
+	//marks a process's allocation as in progress, false if it already holds memory or another allocation of it is
+	//in progress. Every successful claim must be followed by allocate
+	public boolean claim(K process) {
+		return owner.putIfAbsent(process, PENDING) == null;
+	}
+
+	//allocates a claimed process on region first, then on any other region that is not busy, then waits for the busy
+	//ones. Regions the filter rejects are skipped without taking their lock. Returns the KB reserved, or -1 if no
+	//region has room, which drops the claim
+	public int allocate(K process, int first, IntPredicate mayFit, Attempt attempt) {
+		int alloc = tryRegion(first, process, mayFit, attempt, false);
+		for (int k = 1; alloc == -1 && k < locks.length; k++) {
+			alloc = tryRegion((first + k) % locks.length, process, mayFit, attempt, true);
+		}
+		for (int k = 1; alloc == -1 && k < locks.length; k++) {
+			alloc = tryRegion((first + k) % locks.length, process, mayFit, attempt, false);
+		}
+		if (alloc == -1) {
+			owner.remove(process);
+		}
+		return alloc;
+	}
+
+	//allocates on one region, skipping it if onlyIfFree is set and another thread holds its lock
+	private int tryRegion(int i, K process, IntPredicate mayFit, Attempt attempt, boolean onlyIfFree) {
+		if (!mayFit.test(i)) {
+			return -1;
+		}
+		ReentrantLock lock = locks[i];
+		if (onlyIfFree) {
+			if (!lock.tryLock()) {
+				return -1;
+			}
+		}
+		else {
+			lock.lock();
+		}
+		try {
+			int alloc = attempt.allocate(i);
+			if (alloc != -1) {
+				owner.put(process, i);
+			}
+			return alloc;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	//releases a process's memory with the lock of its region held, returns the KB freed or -1 if it has none
+	public int release(K process, IntUnaryOperator release) {
+		int i = regionOf(process);
+		if (i == -1) {
+			return -1; //no memory is allocated to process
+		}
+		int freed;
+		locks[i].lock();
+		try {
+			freed = release.applyAsInt(i);
+		} finally {
+			locks[i].unlock();
+		}
+		owner.remove(process, i);
+		return freed;
+	}
+
+	//region holding a process's memory, or -1 if it has none or its allocation is still in progress
+	public int regionOf(K process) {
+		Integer i = owner.get(process);
+		return i == null || i == PENDING ? -1 : i;
+	}
+
+	//records that the caller released a process's memory from region i under its lock
+	public void released(K process, int i) {
+		owner.remove(process, i);
+	}
+
+	//records that region i holds a process's memory, for memory loaded from a checkpoint
+	public void assign(K process, int i) {
+		owner.put(process, i);
+	}
+
+	//every process holding memory with its region, as a snapshot
+	public List<Map.Entry<K, Integer>> held() {
+		List<Map.Entry<K, Integer>> held = new ArrayList<>();
+		for (Map.Entry<K, Integer> entry : owner.entrySet()) {
+			if (entry.getValue() != PENDING) {
+				held.add(Map.entry(entry.getKey(), entry.getValue()));
+			}
+		}
+		return held;
+	}
+
+	public void lock(int i) {
+		locks[i].lock();
+	}
+
+	public void unlock(int i) {
+		locks[i].unlock();
+	}
+}
@@ -0,0 +1,148 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+//memory a Simulation runs processes in, addressed by process id, with all sizes in KB
+//ContigousMemoryAllocator gives each process one partition, PagedMemoryAllocator gives it whole pages anywhere,
+//CompactPartitionTable is contiguous memory kept in primitive slots, ShardedMemory puts it in one of several of those
+public interface MemoryManager {
+
+	String getName();
+
+	//KB of memory that can be allocated
+	int getSize();
+
+	//KB not allocated to any process
+	int getFreeMemory();
+
+	//KB a request of the given size actually takes, after rounding up to a block or to whole pages
+	int reserve(int size);
+
+	//largest reserved size that can be allocated right now, 0 when memory is full
+	int largestFree();
+
+	//allocates memory for a process id, returns the KB reserved or -1
+	int allocate(int process, int size);
+
+	//the same for a process that will hold the memory for the given number of ticks, so memory that places by
+	//lifetime can use it; -1 if that is not known
+	default int allocate(int process, int size, int lifetime) {
+		return allocate(process, size);
+	}
+
+	//allocates memory for the first n process ids in order, each held for lifetimes[i] ticks (-1 if not known), and
+	//stores the KB reserved for processes[i] (or -1) in allocated[i]. Returns the total KB reserved
+	//once a request has failed every later request at least as big is skipped without a search, and so is any request
+	//bigger than the largest free extent. Skipped requests are not counted as allocations
+	default long allocate(int[] processes, int[] sizes, int[] lifetimes, int n, int[] allocated) {
+		long total = 0;
+		int failedSize = Integer.MAX_VALUE; //smallest size that found no room
+		for (int i = 0; i < n; i++) {
+			if (sizes[i] >= failedSize || reserve(sizes[i]) > largestFree()) {
+				allocated[i] = -1;
+				continue;
+			}
+			allocated[i] = allocate(processes[i], sizes[i], lifetimes[i]);
+			if (allocated[i] == -1) {
+				failedSize = sizes[i];
+			}
+			else {
+				total += allocated[i];
+			}
+		}
+		return total;
+	}
+
+	//releases the memory of a process id, returns the KB freed or -1 if it had none
+	int release(int process);
+
+	//releases the first n process ids of the array and stores the KB freed for each (or -1) in freed, returns the total
+	long release(int[] processes, int n, int[] freed);
+
+	//moves allocations together to merge free memory, at least maxKB at a time if there is that much to move
+	//returns the KB moved, memory that never fragments has nothing to move
+	default int compact(int maxKB) {
+		return 0;
+	}
+
+	//KB moved by compaction so far
+	default long getRelocated() {
+		return 0;
+	}
+
+	//how much the last allocate searched: holes, block sizes or bitmap words depending on the memory, for instrumentation
+	default int lastScanned() {
+		return 0;
+	}
+
+	//free extents merged with a neighbour by releases so far
+	default long getMerges() {
+		return 0;
+	}
+
+	//number of separate free extents
+	int getHoleCount();
+
+	//average free extent in KB, 0 when memory is full
+	double averageHole();
+
+	//percent of the free memory that a request as big as all the free memory could not use
+	double fragmentation();
+
+	//allocation requests so far
+	long getAllocations();
+
+	//allocation requests that found no room
+	long getFailures();
+
+	//percent of allocation requests that found no room
+	default double failureRate() {
+		return getAllocations() > 0 ? 100.0 * getFailures() / getAllocations() : 0;
+	}
+
+	//appends a separator and a picture of what every process holds to out
+	void appendStatus(ProcessRegistry processes, StringBuilder out);
+
+	//appends a separator and the free memory statistics to out
+	void appendMemoryStats(StringBuilder out);
+
+	//writes the full state for a checkpoint, starting with a byte that tells readFrom which kind of memory it is
+	void writeTo(DataOutput out) throws IOException;
+
+	//memory in the state written by writeTo, loaded in bulk. A fit policy name continues contiguous memory with a
+	//different strategy, null keeps the saved one
+	static MemoryManager readFrom(DataInput in, String policy) throws IOException {
+		byte kind = in.readByte();
+		switch (kind) {
+			case ContigousMemoryAllocator.CHECKPOINT_KIND:
+				return ContigousMemoryAllocator.readFrom(in, policy);
+			case PagedMemoryAllocator.CHECKPOINT_KIND:
+				return PagedMemoryAllocator.readFrom(in, policy);
+			case ShardedMemory.CHECKPOINT_KIND:
+				return ShardedMemory.readFrom(in, policy);
+			case CompactPartitionTable.CHECKPOINT_KIND:
+				return CompactPartitionTable.readFrom(in, policy);
+			default:
+				throw new IOException("Unknown kind of memory in checkpoint: " + kind);
+		}
+	}
+
+	//creates memory of the given size for a policy: a fit strategy name (see AllocationStrategy.NAMES), or paged
+	//with 4 KB pages, or paged:<page KB>, or a compact partition table as compact:<best|worst>[:offheap], or several
+	//shards of those as shards:<placement>:<policy>[@<weight>]+...
+	static MemoryManager forPolicy(String policy, int size) {
+		if (policy.startsWith("shards:")) {
+			return ShardedMemory.forPolicy(policy, size);
+		}
+		if (policy.startsWith("compact:")) {
+			return CompactPartitionTable.forPolicy(policy, size);
+		}
+		if (policy.equals("paged")) {
+			return new PagedMemoryAllocator(size, 4);
+		}
+		if (policy.startsWith("paged:")) {
+			return new PagedMemoryAllocator(size, Integer.parseInt(policy.substring("paged:".length())));
+		}
+		return new ContigousMemoryAllocator(size, AllocationStrategy.forName(policy));
+	}
+}
@@ -0,0 +1,110 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+//writes a row of allocator and queue metrics to a sink at fixed tick intervals of a simulation, as CSV or JSON lines
+//every value is read from counters the allocator and simulation keep up to date, so sampling never rescans memory
+//usage: java MetricsExporter <csv|json> <output file> [policy] [memory] [procs] [sizeMax] [time] [interval] [seed]
+public class MetricsExporter {
+
+	//how each row is written
+	public enum Format {
+		CSV,  //a header line, then one comma separated line per sample
+		JSON  //one JSON object per line
+	}
+
+	private static final String[] COLUMNS = {"tick", "holes", "avg_hole_kb", "free_kb", "free_pct", "largest_hole_kb",
+			"fragmentation_pct", "allocations", "failures", "failure_pct", "waiting", "admitted", "wait_mean",
+			"wait_p50", "wait_p99", "wait_max", "relocated_kb"};
+
+	private EventSink sink;
+	private Format format;
+	private long interval; //ticks between samples
+	private boolean started; //whether the CSV header has been written
+	private StringBuilder row = new StringBuilder(); //reused to format each row
+
+	// constructor
+	public MetricsExporter(EventSink sink, Format format, long interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Sample interval must be positive: " + interval);
+		}
+		this.sink = sink;
+		this.format = format;
+		this.interval = interval;
+	}
+
+	public long getInterval() {
+		return interval;
+	}
+
+	//writes the metrics of a simulation as they stand at the end of tick t
+	public void sample(long tick, Simulation sim) {
+		MemoryManager allocator = sim.getAllocator();
+		Histogram waits = sim.getWaitHistogram();
+		row.setLength(0);
+		if (format == Format.CSV && !started) {
+			row.append(String.join(",", COLUMNS)).append('\n');
+		}
+		started = true;
+		int column = 0;
+		if (format == Format.JSON) {
+			row.append('{');
+		}
+		field(column++).append(tick);
+		field(column++).append(allocator.getHoleCount());
+		field(column++).append(allocator.averageHole());
+		field(column++).append(allocator.getFreeMemory());
+		field(column++).append(100.0 * allocator.getFreeMemory() / allocator.getSize());
+		field(column++).append(allocator.largestFree());
+		field(column++).append(allocator.fragmentation());
+		field(column++).append(allocator.getAllocations());
+		field(column++).append(allocator.getFailures());
+		field(column++).append(allocator.failureRate());
+		field(column++).append(sim.getWaiting());
+		field(column++).append(waits.getCount());
+		field(column++).append(waits.getMean());
+		field(column++).append(waits.percentile(50));
+		field(column++).append(waits.percentile(99));
+		field(column++).append(waits.getMax());
+		field(column++).append(sim.getRelocated());
+		if (format == Format.JSON) {
+			row.append('}');
+		}
+		sink.write(row.append('\n'));
+	}
+
+	//starts a column of the current row
+	private StringBuilder field(int column) {
+		if (format == Format.JSON) {
+			if (column > 0) {
+				row.append(',');
+			}
+			return row.append('"').append(COLUMNS[column]).append("\":");
+		}
+		return column > 0 ? row.append(',') : row;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java MetricsExporter <csv|json> <output file> [policy] [memory] [procs] [sizeMax] [time] [interval] [seed]");
+			System.exit(2);
+		}
+		Format format = Format.valueOf(args[0].toUpperCase(Locale.ROOT));
+		String policy = args.length > 2 ? args[2] : "best";
+		int memory = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+		int procs = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+		int sizeMax = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+		int time = args.length > 6 ? Integer.parseInt(args[6]) : 10000;
+		long interval = args.length > 7 ? Long.parseLong(args[7]) : 1000;
+		long seed = args.length > 8 ? Long.parseLong(args[8]) : 1;
+		List<Process> processes = WorkloadGenerator.generate(seed, procs, sizeMax, time);
+		Simulation sim = new Simulation(MemoryManager.forPolicy(policy, memory));
+		sim.setOutput(EventSink.NONE, Simulation.Verbosity.QUIET);
+		try (EventSink out = WriterSink.of(new FileOutputStream(args[1]))) {
+			sim.setMetrics(new MetricsExporter(out, format, interval));
+			sim.run(processes);
+		}
+		System.out.println("Wrote metrics of " + sim.getTicks() + " ticks to " + args[1]);
+	}
+}
@@ -0,0 +1,113 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+//places each request in the first hole that fits, searching onwards from the last allocation
+//the holes are linked into a ring in address order and the rover is kept on the hole the next search starts at as
+//holes come and go, so a search never looks anything up and steps over holes only, never over allocated partitions
+public class NextFitStrategy implements AllocationStrategy {
+	private ContigousMemoryAllocator memory;
+	private int roverAddress; //address of the last allocation
+	private Partition rover; //first hole that ends above roverAddress, or the lowest hole if none does; null when memory is full
+	private int holes; //number of holes in the ring
+	private int scanned; //holes the last search looked at
+
+	public String getName() {
+		return "next fit";
+	}
+
+	public void reset(ContigousMemoryAllocator memory) {
+		this.memory = memory;
+		this.roverAddress = 0;
+		this.rover = null;
+		this.holes = 0;
+		for(Partition hole : memory.getHoles().values()) {
+			holeAdded(hole);
+		}
+	}
+
+	public int place(int size) {
+		Partition hole = rover;
+		scanned = 0;
+		//one lap of the ring at most, wrapping around from the top of memory to the bottom
+		for(int i = 0; i < holes; i++, hole = hole.getNextHole()) {
+			scanned++;
+			if(hole.getLength() >= size) {
+				rover = hole;
+				roverAddress = hole.getBase();
+				return roverAddress;
+			}
+		}
+		return -1;
+	}
+
+	public int lastScanned() {
+		return scanned;
+	}
+
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(roverAddress);
+	}
+
+	//puts the rover back on the first hole ending above the saved address, wrapping to the lowest
+	public void readState(DataInput in) throws IOException {
+		roverAddress = in.readInt();
+		Map.Entry<Integer, Partition> start = memory.getHoles().floorEntry(roverAddress);
+		if(start == null || start.getKey() + start.getValue().getLength() <= roverAddress) {
+			start = memory.getHoles().higherEntry(roverAddress);
+		}
+		if(start == null) {
+			start = memory.getHoles().firstEntry();
+		}
+		rover = start != null ? start.getValue() : null;
+	}
+
+	//links a new hole into the ring between its neighbours by address
+	public void holeAdded(Partition hole) {
+		holes++;
+		if(rover == null) {
+			hole.setPrevHole(hole);
+			hole.setNextHole(hole);
+			rover = hole;
+			return;
+		}
+		//the hole map already holds the new hole, so its lower neighbour is its predecessor, or the highest hole
+		//when it is the lowest, which closes the ring
+		Map.Entry<Integer, Partition> lower = memory.getHoles().lowerEntry(hole.getBase());
+		Partition prevHole = lower != null ? lower.getValue() : memory.getHoles().lastEntry().getValue();
+		Partition nextHole = prevHole.getNextHole();
+		hole.setPrevHole(prevHole);
+		hole.setNextHole(nextHole);
+		prevHole.setNextHole(hole);
+		nextHole.setPrevHole(hole);
+		if(startsBefore(hole, rover)) {
+			rover = hole;
+		}
+	}
+
+	//unlinks a hole from the ring, the rover moves on to the next hole if it was this one
+	public void holeRemoved(Partition hole) {
+		holes--;
+		if(holes == 0) {
+			rover = null;
+		}
+		else {
+			if(rover == hole) {
+				rover = hole.getNextHole();
+			}
+			hole.getPrevHole().setNextHole(hole.getNextHole());
+			hole.getNextHole().setPrevHole(hole.getPrevHole());
+		}
+		hole.setPrevHole(null);
+		hole.setNextHole(null);
+	}
+
+	//true if a search from the rover address reaches hole a before hole b: holes ending above the address come
+	//first, lowest first, then the search wraps to the holes below it
+	private boolean startsBefore(Partition a, Partition b) {
+		boolean aWraps = a.getBase() + a.getLength() <= roverAddress;
+		boolean bWraps = b.getBase() + b.getLength() <= roverAddress;
+		return aWraps != bWraps ? bWraps : a.getBase() < b.getBase();
+	}
+}
@@ -0,0 +1,298 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+//paged memory: memory is split into equal frames and each process gets whole pages in any free frames, which its
+//page table maps. Any free frame serves any page, so there is no external fragmentation, only the part of each
+//process's last page it does not use. Free frames are a bitmap scanned and updated a 64-bit word at a time
+public class PagedMemoryAllocator implements MemoryManager {
+	static final byte CHECKPOINT_KIND = 1; //first byte of a checkpoint of paged memory
+	private int pageSize; //KB in a page, and in a frame
+	private int frames; //number of frames
+	private long[] freeMap; //bit f % 64 of word f / 64 is set while frame f is free
+	private int freeFrames;
+	private int freeRuns; //runs of neighbouring free frames, kept up to date word by word
+	private int firstFreeWord; //no word below this one has a free frame
+	private int[][] pageTables; //process id to the frame of each of its pages, null while it has no memory
+	private int[] requested; //process id to the KB it asked for
+	private long requestedTotal; //KB asked for by the processes holding memory
+	private long allocations; //allocation requests so far
+	private long failures; //allocation requests that found no room
+	private int scanned; //bitmap words the last allocation looked at
+
+	// constructor, memory beyond the last whole frame is not used
+	public PagedMemoryAllocator(int size, int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be at least 1 KB: " + pageSize);
+		}
+		this.pageSize = pageSize;
+		this.frames = size / pageSize;
+		this.freeMap = new long[(frames + 63) / 64];
+		for (int w = 0; w < freeMap.length; w++) {
+			int bits = Math.min(64, frames - w * 64);
+			freeMap[w] = bits == 64 ? -1L : (1L << bits) - 1;
+		}
+		this.freeFrames = frames;
+		this.freeRuns = frames > 0 ? 1 : 0;
+		this.pageTables = new int[16][];
+		this.requested = new int[16];
+	}
+
+	public String getName() {
+		return "paging (" + pageSize + " KB pages)";
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public int getSize() {
+		return frames * pageSize;
+	}
+
+	public int getFreeMemory() {
+		return freeFrames * pageSize;
+	}
+
+	//whole pages
+	public int reserve(int size) {
+		return pages(size) * pageSize;
+	}
+
+	//every free frame can take a page, so all of free memory
+	public int largestFree() {
+		return getFreeMemory();
+	}
+
+	//the frames holding a process's pages in page order, or null if it has no memory
+	public int[] getPageTable(int process) {
+		return process >= 0 && process < pageTables.length ? pageTables[process] : null;
+	}
+
+	public int allocate(int process, int size) {
+		if (process < 0 || getPageTable(process) != null) {
+			return -1; //illegal request as process has already been allocated memory, or a bad id
+		}
+		allocations++;
+		int pages = pages(size);
+		if (pages > freeFrames) {
+			scanned = 0;
+			failures++;
+			return -1;
+		}
+		if (process >= pageTables.length) {
+			int length = Math.max(process + 1, pageTables.length * 2);
+			pageTables = Arrays.copyOf(pageTables, length);
+			requested = Arrays.copyOf(requested, length);
+		}
+		int[] table = new int[pages];
+		int mapped = 0;
+		int w = firstFreeWord;
+		//takes the lowest free frames, clearing as many as are needed from each word in one step
+		while (mapped < pages) {
+			long word = freeMap[w];
+			if (word == 0) {
+				w++;
+				continue;
+			}
+			long taken = 0;
+			while (word != 0 && mapped < pages) {
+				long low = word & -word;
+				table[mapped++] = w * 64 + Long.numberOfTrailingZeros(low);
+				taken |= low;
+				word ^= low;
+			}
+			setWord(w, freeMap[w] & ~taken);
+			if (word == 0) {
+				w++;
+			}
+		}
+		scanned = w - firstFreeWord + 1;
+		firstFreeWord = w;
+		freeFrames -= pages;
+		pageTables[process] = table;
+		requested[process] = size;
+		requestedTotal += size;
+		return pages * pageSize;
+	}
+
+	public int release(int process) {
+		int[] table = getPageTable(process);
+		if (table == null) {
+			return -1; //no memory is allocated to process
+		}
+		pageTables[process] = null;
+		requestedTotal -= requested[process];
+		//frames were taken lowest first, so the pages sharing a word are next to each other in the table
+		for (int i = 0; i < table.length; ) {
+			int w = table[i] >>> 6;
+			long given = 0;
+			for (; i < table.length && table[i] >>> 6 == w; i++) {
+				given |= 1L << table[i];
+			}
+			setWord(w, freeMap[w] | given);
+		}
+		if (table.length > 0) {
+			firstFreeWord = Math.min(firstFreeWord, table[0] >>> 6);
+		}
+		freeFrames += table.length;
+		return table.length * pageSize;
+	}
+
+	//frees are independent of each other, so a batch is just the releases in order
+	public long release(int[] processes, int n, int[] freed) {
+		long total = 0;
+		for (int i = 0; i < n; i++) {
+			freed[i] = release(processes[i]);
+			if (freed[i] != -1) {
+				total += freed[i];
+			}
+		}
+		return total;
+	}
+
+	//runs of free frames, which only matter for locality as any frame serves any page
+	public int getHoleCount() {
+		return freeRuns;
+	}
+
+	public double averageHole() {
+		return freeRuns > 0 ? (double) getFreeMemory() / freeRuns : 0;
+	}
+
+	//always 0, a request as big as the free memory can use all of it
+	public double fragmentation() {
+		return 0;
+	}
+
+	//percent of the allocated memory that sits unused at the end of the processes' last pages
+	public double internalFragmentation() {
+		long allocated = (long) (frames - freeFrames) * pageSize;
+		return allocated > 0 ? 100.0 * (allocated - requestedTotal) / allocated : 0;
+	}
+
+	//bitmap words the last allocation looked at
+	public int lastScanned() {
+		return scanned;
+	}
+
+	public long getAllocations() {
+		return allocations;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	//appends a separator and every process's pages in id order, then the free frames, to out
+	public void appendStatus(ProcessRegistry processes, StringBuilder out) {
+		out.append(ContigousMemoryAllocator.BANNER).append('\n');
+		out.append("\n|");
+		for (int id = 0; id < pageTables.length; id++) {
+			if (pageTables[id] != null) {
+				Process process = processes.get(id);
+				out.append(' ').append(process.getName()).append(" [").append((double) process.getTime() / 1000)
+						.append("s] (").append(pageTables[id].length * pageSize).append(" KB in ")
+						.append(pageTables[id].length).append(" pages) ");
+			}
+		}
+		out.append(" Free (").append(getFreeMemory()).append(" KB in ").append(freeFrames).append(" frames) |\n");
+	}
+
+	//appends a separator and the free frames, their runs and the memory lost inside pages to out
+	public void appendMemoryStats(StringBuilder out) {
+		out.append(ContigousMemoryAllocator.BANNER).append('\n');
+		out.append("\nNumber of free frames: ").append(freeFrames).append(" of ").append(frames).append('\n');
+		out.append("Runs of free frames: ").append(freeRuns).append('\n');
+		out.append("Total free memory: ").append(getFreeMemory()).append(" KB\n");
+		out.append("Percentage of total free memory: ").append(frames > 0 ? 100.0 * freeFrames / frames : 0).append("%\n");
+		out.append("Internal fragmentation: ").append(internalFragmentation()).append("%\n");
+	}
+
+	//writes the frame bitmap as it is, then the page table of every process holding memory, for a checkpoint
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeByte(CHECKPOINT_KIND);
+		out.writeInt(frames * pageSize);
+		out.writeInt(pageSize);
+		for (long word : freeMap) {
+			out.writeLong(word);
+		}
+		out.writeInt(freeFrames);
+		out.writeInt(freeRuns);
+		out.writeInt(firstFreeWord);
+		int holders = 0;
+		for (int[] table : pageTables) {
+			if (table != null) {
+				holders++;
+			}
+		}
+		out.writeInt(holders);
+		for (int id = 0; id < pageTables.length; id++) {
+			if (pageTables[id] != null) {
+				out.writeInt(id);
+				out.writeInt(requested[id]);
+				out.writeInt(pageTables[id].length);
+				for (int frame : pageTables[id]) {
+					out.writeInt(frame);
+				}
+			}
+		}
+		out.writeLong(requestedTotal);
+		out.writeLong(allocations);
+		out.writeLong(failures);
+	}
+
+	//paged memory in the state written by writeTo, after its kind byte, with the bitmap loaded as it was saved
+	static PagedMemoryAllocator readFrom(DataInput in, String policy) throws IOException {
+		int size = in.readInt();
+		int pageSize = in.readInt();
+		if (policy != null && !policy.equals("paged") && !policy.equals("paged:" + pageSize)) {
+			throw new IllegalArgumentException("A checkpoint of paged memory with " + pageSize + " KB pages cannot continue as " + policy);
+		}
+		PagedMemoryAllocator memory = new PagedMemoryAllocator(size, pageSize);
+		for (int w = 0; w < memory.freeMap.length; w++) {
+			memory.freeMap[w] = in.readLong();
+		}
+		memory.freeFrames = in.readInt();
+		memory.freeRuns = in.readInt();
+		memory.firstFreeWord = in.readInt();
+		for (int n = in.readInt(); n > 0; n--) {
+			int id = in.readInt();
+			if (id >= memory.pageTables.length) {
+				int length = Math.max(id + 1, memory.pageTables.length * 2);
+				memory.pageTables = Arrays.copyOf(memory.pageTables, length);
+				memory.requested = Arrays.copyOf(memory.requested, length);
+			}
+			memory.requested[id] = in.readInt();
+			int[] table = new int[in.readInt()];
+			for (int i = 0; i < table.length; i++) {
+				table[i] = in.readInt();
+			}
+			memory.pageTables[id] = table;
+		}
+		memory.requestedTotal = in.readLong();
+		memory.allocations = in.readLong();
+		memory.failures = in.readLong();
+		return memory;
+	}
+
+	//pages needed for a request, at least one
+	private int pages(int size) {
+		return Math.max(1, (size + pageSize - 1) / pageSize);
+	}
+
+	//replaces a word of the bitmap, updating the count of free runs from the run starts in it and the word after it
+	private void setWord(int w, long value) {
+		int before = runStarts(w) + (w + 1 < freeMap.length ? runStarts(w + 1) : 0);
+		freeMap[w] = value;
+		int after = runStarts(w) + (w + 1 < freeMap.length ? runStarts(w + 1) : 0);
+		freeRuns += after - before;
+	}
+
+	//free frames in word w whose lower neighbour is not free
+	private int runStarts(int w) {
+		long carry = w > 0 ? freeMap[w - 1] >>> 63 : 0;
+		return Long.bitCount(freeMap[w] & ~(freeMap[w] << 1 | carry));
+	}
+}
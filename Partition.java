@@ -4,14 +4,18 @@ public class Partition {
 	private int base;         // base address
 	private int length;       // partition size
 	private boolean bFree;    // status: free or allocated
-	private String process;   // assigned process if allocated
+	private int owner;        // id of the assigned process if allocated
+	private Partition prev;   // neighbouring partition at the next lower address
+	private Partition next;   // neighbouring partition at the next higher address
+	private Partition prevHole;   // while free, the next lower hole in the ring of holes kept by next fit
+	private Partition nextHole;   // while free, the next higher hole in that ring, wrapping to the lowest
 
 	// constructor method
 	public Partition(int base, int length) {
 		this.base = base;
 		this.length = length;
 		this.bFree = true;     // free by default when creating
-		this.process = null;   // unallocated to any process
+		this.owner = -1;       // unallocated to any process
 	}
 	public int getBase() {
 		return base;
@@ -37,16 +41,48 @@ public class Partition {
 		this.bFree = bFree;
 	}
 
-	public String getProcess() {
-		return process;
+	public int getOwner() {
+		return owner;
 	}
 
-	public void setProcess(String process) {
-		this.process = process;
+	public void setOwner(int owner) {
+		this.owner = owner;
+	}
+
+	public Partition getPrev() {
+		return prev;
+	}
+
+	public void setPrev(Partition prev) {
+		this.prev = prev;
+	}
+
+	public Partition getNext() {
+		return next;
+	}
+
+	public void setNext(Partition next) {
+		this.next = next;
+	}
+
+	public Partition getPrevHole() {
+		return prevHole;
+	}
+
+	public void setPrevHole(Partition prevHole) {
+		this.prevHole = prevHole;
+	}
+
+	public Partition getNextHole() {
+		return nextHole;
+	}
+
+	public void setNextHole(Partition nextHole) {
+		this.nextHole = nextHole;
 	}
 	public String toString() {
 		return "Partition [base=" + base + "length=" + length +
-				"bfree=" + bFree + "process=" + process + "]";
+				"bfree=" + bFree + "owner=" + owner + "]";
 	}
 	
 	
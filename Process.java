@@ -2,6 +2,8 @@ public class Process {
     private String name;
     private int size;
     private int time;
+    private int id = -1; // id given by the ProcessRegistry of the run
+    private long arrival; // tick the process arrives at, 0 unless it comes from a stream
 
     public Process(String name, int size, int time) {
         this.name = name;
@@ -32,4 +34,20 @@ public class Process {
     public void setTime(int time) {
         this.time = time;
     }
+
+    public long getArrival() {
+        return arrival;
+    }
+
+    public void setArrival(long arrival) {
+        this.arrival = arrival;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
 }
@@ -0,0 +1,46 @@
+import java.util.Arrays;
+
+//gives every process of a run a small integer id and finds it again by that id in constant time
+//partitions store the id of their owner, so turning a partition back into its process is an array lookup
+public class ProcessRegistry {
+	private Process[] processes = new Process[16]; //process by id
+	private int count; //number of ids handed out
+	private int[] freeIds = new int[16]; //ids given back by release, handed out again before new ones
+	private int freeIdCount;
+
+	//assigns the process the next free id and returns it
+	public int register(Process process) {
+		if (freeIdCount > 0) {
+			int id = freeIds[--freeIdCount];
+			process.setId(id);
+			processes[id] = process;
+			return id;
+		}
+		if (count == processes.length) {
+			processes = Arrays.copyOf(processes, count * 2);
+		}
+		process.setId(count);
+		processes[count] = process;
+		return count++;
+	}
+
+	//the process with the given id, or null if there is none
+	public Process get(int id) {
+		return id >= 0 && id < count ? processes[id] : null;
+	}
+
+	//forgets a finished process so its id can be reused, which keeps a streamed run's registry as small as the
+	//number of processes it holds at once
+	public void release(int id) {
+		processes[id] = null;
+		if (freeIdCount == freeIds.length) {
+			freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+		}
+		freeIds[freeIdCount++] = id;
+	}
+
+	//number of ids handed out, including released ones
+	public int size() {
+		return count;
+	}
+}
@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+//keeps a free list per power-of-two size class so most requests are placed without searching
+public class SegregatedFitStrategy implements AllocationStrategy {
+	private List<Set<Partition>> classes; //classes.get(k) holds the holes of 2^k to 2^(k+1)-1 KB
+	private int nonEmpty; //bit k is set while class k has a hole
+	private int scanned; //holes the last search looked at
+
+	public String getName() {
+		return "segregated fit";
+	}
+
+	public void reset(ContigousMemoryAllocator memory) {
+		classes = new ArrayList<>(Integer.SIZE);
+		for(int k = 0; k < Integer.SIZE; k++) {
+			classes.add(new LinkedHashSet<>());
+		}
+		nonEmpty = 0;
+		for(Partition hole : memory.getHoles().values()) {
+			holeAdded(hole);
+		}
+	}
+
+	public int place(int size) {
+		int k = sizeClass(Math.max(size, 1));
+		//holes in the request's own class may still be too small, so that class is searched
+		scanned = 0;
+		for(Partition hole : classes.get(k)) {
+			scanned++;
+			if(hole.getLength() >= size) {
+				return hole.getBase();
+			}
+		}
+		//any hole in a higher class is big enough
+		int higher = k + 1 < Integer.SIZE ? nonEmpty & (-1 << (k + 1)) : 0;
+		if(higher == 0) {
+			return -1;
+		}
+		scanned++;
+		return classes.get(Integer.numberOfTrailingZeros(higher)).iterator().next().getBase();
+	}
+
+	public int lastScanned() {
+		return scanned;
+	}
+
+	public void holeAdded(Partition hole) {
+		int k = sizeClass(hole.getLength());
+		classes.get(k).add(hole);
+		nonEmpty |= 1 << k;
+	}
+
+	public void holeRemoved(Partition hole) {
+		int k = sizeClass(hole.getLength());
+		Set<Partition> list = classes.get(k);
+		list.remove(hole);
+		if(list.isEmpty()) {
+			nonEmpty &= ~(1 << k);
+		}
+	}
+
+	//index of the power-of-two size class a length belongs to
+	private static int sizeClass(int length) {
+		return 31 - Integer.numberOfLeadingZeros(length);
+	}
+}
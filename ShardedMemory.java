@@ -0,0 +1,479 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+//memory made of several independent regions (shards), like the memory nodes of a NUMA host, each its own
+//MemoryManager with its own size and policy behind its own lock. A placement policy picks the shard a process tries
+//first and it spills over to the others when that one has no room, so threads allocating at once mostly work on
+//different locks and capacity and throughput grow with the number of shards
+//policy syntax: shards:<affinity|least_loaded|largest_hole>:<policy>[@<weight>]+<policy>[@<weight>]+...
+//memory is split between the shards in proportion to their weights (1 by default)
+public class ShardedMemory implements MemoryManager {
+	static final byte CHECKPOINT_KIND = 2; //first byte of a checkpoint of sharded memory
+	private static final int PARALLEL_BATCH = 256; //batch releases at least this big fan out over the shards in parallel
+
+	//how the shard a process tries first is picked
+	public enum Placement {
+		AFFINITY,      //a hash of the process id, so a process always starts on the same shard
+		LEAST_LOADED,  //the shard with the largest share of its memory free
+		LARGEST_HOLE   //the shard with the largest free extent
+	}
+
+	private MemoryManager[] shards;
+	private LockedRegions<Integer> regions; //shard locks and the shard holding each process's memory
+	private Placement placement;
+	private AtomicIntegerArray freeKB; //free memory of each shard, updated under its lock and read without it
+	private AtomicIntegerArray largestKB; //largest free extent of each shard, likewise
+	private AtomicIntegerArray holes; //hole count of each shard, likewise
+	private LongAdder allocations = new LongAdder();
+	private LongAdder failures = new LongAdder();
+	private LongAdder spills = new LongAdder(); //allocations placed on another shard than the one picked first
+	private ThreadLocal<int[]> scanned = ThreadLocal.withInitial(() -> new int[1]); //each thread's last lastScanned()
+
+	// constructor, the shards must not be used directly afterwards
+	public ShardedMemory(MemoryManager[] shards, Placement placement) {
+		if (shards.length < 1) {
+			throw new IllegalArgumentException("Sharded memory needs at least one shard");
+		}
+		this.shards = shards.clone();
+		this.placement = placement;
+		this.regions = new LockedRegions<>(shards.length);
+		this.freeKB = new AtomicIntegerArray(shards.length);
+		this.largestKB = new AtomicIntegerArray(shards.length);
+		this.holes = new AtomicIntegerArray(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			refresh(i);
+		}
+	}
+
+	//sharded memory for a policy of the form shards:<placement>:<policy>[@<weight>]+..., splitting size by weight
+	static ShardedMemory forPolicy(String policy, int size) {
+		String[] entries = entries(policy);
+		int[] weights = new int[entries.length];
+		long total = 0;
+		for (int i = 0; i < entries.length; i++) {
+			int at = entries[i].lastIndexOf('@');
+			weights[i] = at < 0 ? 1 : Integer.parseInt(entries[i].substring(at + 1));
+			if (weights[i] < 1) {
+				throw new IllegalArgumentException("Shard weight must be at least 1: " + entries[i]);
+			}
+			entries[i] = at < 0 ? entries[i] : entries[i].substring(0, at);
+			total += weights[i];
+		}
+		MemoryManager[] shards = new MemoryManager[entries.length];
+		long before = 0;
+		for (int i = 0; i < entries.length; i++) {
+			int start = (int) (size * before / total);
+			before += weights[i];
+			shards[i] = MemoryManager.forPolicy(entries[i], (int) (size * before / total) - start);
+		}
+		return new ShardedMemory(shards, placement(policy));
+	}
+
+	//the placement named in a sharded policy
+	private static Placement placement(String policy) {
+		int colon = policy.indexOf(':', "shards:".length());
+		if (!policy.startsWith("shards:") || colon < 0) {
+			throw new IllegalArgumentException("Sharded policy must look like shards:<placement>:<policy>+<policy>...: " + policy);
+		}
+		String name = policy.substring("shards:".length(), colon);
+		for (Placement placement : Placement.values()) {
+			if (placement.name().equalsIgnoreCase(name)) {
+				return placement;
+			}
+		}
+		throw new IllegalArgumentException("Unknown shard placement: " + name + " (affinity, least_loaded or largest_hole)");
+	}
+
+	//the shard policies named in a sharded policy, weights included
+	private static String[] entries(String policy) {
+		placement(policy); //fails on a malformed policy
+		String[] entries = policy.substring(policy.indexOf(':', "shards:".length()) + 1).split("\\+");
+		for (String entry : entries) {
+			if (entry.isEmpty() || entry.startsWith("shards:")) {
+				throw new IllegalArgumentException("Bad shard policy in " + policy + ": '" + entry + "'");
+			}
+		}
+		return entries;
+	}
+
+	public String getName() {
+		StringBuilder name = new StringBuilder(shards.length + " shards by " + placement.name().toLowerCase(Locale.ROOT) + ":");
+		for (MemoryManager shard : shards) {
+			name.append(' ').append(shard.getName()).append(" (").append(shard.getSize()).append(" KB)");
+		}
+		return name.toString();
+	}
+
+	public Placement getPlacement() {
+		return placement;
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	//one shard, for reporting; it must not be changed directly
+	public MemoryManager getShard(int i) {
+		return shards[i];
+	}
+
+	//shard holding a process's memory, or -1 if it has none
+	public int shardOf(int process) {
+		return regions.regionOf(process);
+	}
+
+	//allocations placed on another shard than the one picked first
+	public long getSpills() {
+		return spills.sum();
+	}
+
+	public int getSize() {
+		int size = 0;
+		for (MemoryManager shard : shards) {
+			size += shard.getSize();
+		}
+		return size;
+	}
+
+	public int getFreeMemory() {
+		int free = 0;
+		for (int i = 0; i < shards.length; i++) {
+			free += freeKB.get(i);
+		}
+		return free;
+	}
+
+	//the smallest any shard would take, so together with largestFree a request that fits some shard is never
+	//reported as not fitting; one that fits none may still be tried and fail
+	public int reserve(int size) {
+		int reserved = Integer.MAX_VALUE;
+		for (MemoryManager shard : shards) {
+			reserved = Math.min(reserved, shard.reserve(size));
+		}
+		return reserved;
+	}
+
+	//the largest free extent of any shard, as a request never spans shards
+	public int largestFree() {
+		int largest = 0;
+		for (int i = 0; i < shards.length; i++) {
+			largest = Math.max(largest, largestKB.get(i));
+		}
+		return largest;
+	}
+
+	//allocates on the shard the placement picks, spilling over to the others in turn when it has no room; shards
+	//busy with another thread are skipped on a first pass and waited for on a second
+	public int allocate(int process, int size) {
+		return allocate(process, size, -1);
+	}
+
+	//the lifetime is passed on to the shard, so each shard can place by it. A shard whose largest extent is too small
+	//is passed over without taking its lock
+	public int allocate(int process, int size, int lifetime) {
+		if (process < 0 || !regions.claim(process)) {
+			return -1; //illegal request as process has already been allocated memory, or a bad id
+		}
+		allocations.increment();
+		int[] scanned = this.scanned.get();
+		scanned[0] = 0;
+		int first = pick(process);
+		int alloc = regions.allocate(process, first, i -> largestKB.get(i) >= shards[i].reserve(size), i -> {
+			int reserved = shards[i].allocate(process, size, lifetime);
+			scanned[0] += 1 + shards[i].lastScanned();
+			if (reserved != -1) {
+				refresh(i);
+			}
+			return reserved;
+		});
+		if (alloc == -1) {
+			failures.increment();
+		}
+		else if (regions.regionOf(process) != first) {
+			spills.increment();
+		}
+		return alloc;
+	}
+
+	//the shard a process tries first
+	private int pick(int process) {
+		switch (placement) {
+			case AFFINITY:
+				return (int) (((process * 0x9E3779B97F4A7C15L) >>> 32) % shards.length);
+			case LEAST_LOADED: {
+				int best = 0;
+				for (int i = 1; i < shards.length; i++) {
+					//compares free/size without dividing
+					if ((long) freeKB.get(i) * shards[best].getSize() > (long) freeKB.get(best) * shards[i].getSize()) {
+						best = i;
+					}
+				}
+				return best;
+			}
+			default: {
+				int best = 0;
+				for (int i = 1; i < shards.length; i++) {
+					if (largestKB.get(i) > largestKB.get(best)) {
+						best = i;
+					}
+				}
+				return best;
+			}
+		}
+	}
+
+	//updates the free memory figures of a shard, called with its lock held
+	private void refresh(int i) {
+		freeKB.set(i, shards[i].getFreeMemory());
+		largestKB.set(i, shards[i].largestFree());
+		holes.set(i, shards[i].getHoleCount());
+	}
+
+	public int release(int process) {
+		return regions.release(process, i -> {
+			int freed = shards[i].release(process);
+			refresh(i);
+			return freed;
+		});
+	}
+
+	//groups the processes by shard and releases each group as one batch, so every shard still merges its holes in
+	//one pass; large batches release the groups of different shards in parallel
+	public long release(int[] processes, int n, int[] freed) {
+		int[] shardOf = new int[n];
+		int[] counts = new int[shards.length + 1];
+		for (int k = 0; k < n; k++) {
+			shardOf[k] = regions.regionOf(processes[k]);
+			if (shardOf[k] >= 0) {
+				counts[shardOf[k] + 1]++;
+			}
+		}
+		//counting sort of the positions by shard, starts[i] is where shard i's group begins
+		int[] starts = new int[shards.length + 1];
+		for (int i = 1; i <= shards.length; i++) {
+			starts[i] = starts[i - 1] + counts[i];
+		}
+		int[] order = new int[n];
+		int[] ids = new int[n];
+		int[] next = starts.clone();
+		for (int k = 0; k < n; k++) {
+			if (shardOf[k] < 0) {
+				freed[k] = -1; //no memory is allocated to process
+				continue;
+			}
+			int at = next[shardOf[k]]++;
+			order[at] = k;
+			ids[at] = processes[k];
+		}
+		long[] totals = new long[shards.length];
+		IntStream groups = IntStream.range(0, shards.length).filter(i -> next[i] > starts[i]);
+		if (n >= PARALLEL_BATCH && shards.length > 1) {
+			groups = groups.parallel();
+		}
+		groups.forEach(i -> totals[i] = releaseGroup(i, ids, order, starts[i], next[i] - starts[i], freed));
+		long total = 0;
+		for (long t : totals) {
+			total += t;
+		}
+		return total;
+	}
+
+	//releases the count ids from position start on one shard and scatters the KB freed back to their positions
+	private long releaseGroup(int i, int[] ids, int[] order, int start, int count, int[] freed) {
+		int[] group = new int[count];
+		int[] groupFreed = new int[count];
+		System.arraycopy(ids, start, group, 0, count);
+		long total;
+		regions.lock(i);
+		try {
+			total = shards[i].release(group, count, groupFreed);
+			refresh(i);
+		} finally {
+			regions.unlock(i);
+		}
+		for (int k = 0; k < count; k++) {
+			freed[order[start + k]] = groupFreed[k];
+			if (groupFreed[k] != -1) {
+				regions.released(group[k], i);
+			}
+		}
+		return total;
+	}
+
+	//compacts every shard on its own, as nothing moves between shards
+	public int compact(int maxKB) {
+		int moved = 0;
+		for (int i = 0; i < shards.length; i++) {
+			regions.lock(i);
+			try {
+				moved += shards[i].compact(maxKB);
+				refresh(i);
+			} finally {
+				regions.unlock(i);
+			}
+		}
+		return moved;
+	}
+
+	public long getRelocated() {
+		long relocated = 0;
+		for (int i = 0; i < shards.length; i++) {
+			regions.lock(i);
+			try {
+				relocated += shards[i].getRelocated();
+			} finally {
+				regions.unlock(i);
+			}
+		}
+		return relocated;
+	}
+
+	//shards tried plus what each of them searched in the calling thread's last allocation
+	public int lastScanned() {
+		return scanned.get()[0];
+	}
+
+	public long getMerges() {
+		long merges = 0;
+		for (int i = 0; i < shards.length; i++) {
+			regions.lock(i);
+			try {
+				merges += shards[i].getMerges();
+			} finally {
+				regions.unlock(i);
+			}
+		}
+		return merges;
+	}
+
+	//sum of the shards' hole counts without taking their locks, so each shard's count is as of its last change
+	public int getHoleCount() {
+		int count = 0;
+		for (int i = 0; i < shards.length; i++) {
+			count += holes.get(i);
+		}
+		return count;
+	}
+
+	public double averageHole() {
+		int holes = getHoleCount();
+		return holes > 0 ? (double) getFreeMemory() / holes : 0;
+	}
+
+	//percent of the free memory outside the largest extent of any shard, so memory split into shards counts as
+	//fragmented even when every shard is one hole
+	public double fragmentation() {
+		int free = getFreeMemory();
+		return free > 0 ? 100.0 * (free - largestFree()) / free : 0;
+	}
+
+	//allocation requests, each counted once however many shards it tried
+	public long getAllocations() {
+		return allocations.sum();
+	}
+
+	//allocation requests no shard had room for
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	//appends every shard's picture, each under a line naming it
+	public void appendStatus(ProcessRegistry processes, StringBuilder out) {
+		for (int i = 0; i < shards.length; i++) {
+			regions.lock(i);
+			try {
+				out.append("\nShard ").append(i).append(": ").append(shards[i].getName()).append(", ")
+						.append(shards[i].getSize()).append(" KB\n");
+				shards[i].appendStatus(processes, out);
+			} finally {
+				regions.unlock(i);
+			}
+		}
+	}
+
+	//appends a separator and the totals over all shards, then every shard's own statistics
+	public void appendMemoryStats(StringBuilder out) {
+		int free = getFreeMemory();
+		int size = getSize();
+		out.append(ContigousMemoryAllocator.BANNER).append('\n');
+		out.append("\nShards: ").append(shards.length).append(" placed by ")
+				.append(placement.name().toLowerCase(Locale.ROOT)).append('\n');
+		out.append("Total free memory: ").append(free).append(" KB\n");
+		out.append("Percentage of total free memory: ").append(size > 0 ? 100.0 * free / size : 0).append("%\n");
+		out.append("Allocations spilled to another shard: ").append(getSpills()).append('\n');
+		for (int i = 0; i < shards.length; i++) {
+			regions.lock(i);
+			try {
+				out.append("\nShard ").append(i).append(": ").append(shards[i].getName()).append('\n');
+				shards[i].appendMemoryStats(out);
+			} finally {
+				regions.unlock(i);
+			}
+		}
+	}
+
+	//writes the placement, every shard's own checkpoint and which shard holds each process, for a checkpoint
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeByte(CHECKPOINT_KIND);
+		out.writeByte(placement.ordinal());
+		out.writeInt(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			regions.lock(i);
+			try {
+				shards[i].writeTo(out);
+			} finally {
+				regions.unlock(i);
+			}
+		}
+		List<Map.Entry<Integer, Integer>> held = regions.held();
+		out.writeInt(held.size());
+		for (Map.Entry<Integer, Integer> entry : held) {
+			out.writeInt(entry.getKey());
+			out.writeInt(entry.getValue());
+		}
+		out.writeLong(allocations.sum());
+		out.writeLong(failures.sum());
+		out.writeLong(spills.sum());
+	}
+
+	//sharded memory in the state written by writeTo, after its kind byte. A sharded policy with as many shards
+	//continues with its placement and shard policies (its weights are ignored, the sizes are saved), null keeps them
+	static ShardedMemory readFrom(DataInput in, String policy) throws IOException {
+		Placement placement = Placement.values()[in.readByte()];
+		MemoryManager[] shards = new MemoryManager[in.readInt()];
+		String[] entries = null;
+		if (policy != null) {
+			if (!policy.startsWith("shards:")) {
+				throw new IllegalArgumentException("A checkpoint of sharded memory cannot continue as " + policy);
+			}
+			entries = entries(policy);
+			if (entries.length != shards.length) {
+				throw new IllegalArgumentException("A checkpoint of " + shards.length + " shards cannot continue as " + policy);
+			}
+			placement = placement(policy);
+		}
+		for (int i = 0; i < shards.length; i++) {
+			String entry = entries == null ? null : entries[i];
+			if (entry != null && entry.lastIndexOf('@') >= 0) {
+				entry = entry.substring(0, entry.lastIndexOf('@'));
+			}
+			shards[i] = MemoryManager.readFrom(in, entry);
+		}
+		ShardedMemory memory = new ShardedMemory(shards, placement);
+		for (int n = in.readInt(); n > 0; n--) {
+			int process = in.readInt();
+			memory.regions.assign(process, in.readInt());
+		}
+		memory.allocations.add(in.readLong());
+		memory.failures.add(in.readLong());
+		memory.spills.add(in.readLong());
+		return memory;
+	}
+}
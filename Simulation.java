@@ -0,0 +1,540 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+//runs a list of processes through an allocator as a discrete event simulation
+//each process holds its memory for getTime() ticks once it is admitted, and processes that do not fit wait in a queue
+//the clock jumps straight from one release to the next instead of ticking through every millisecond in between
+//a list arrives all at tick 0; a stream of processes arrives over time, each at its getArrival() tick, and is only
+//drawn from the stream when the clock gets there
+public class Simulation {
+	private static final int STATUS_INTERVAL = 1000; //ticks between status snapshots (1 "second")
+
+	//how much a simulation writes to its sink
+	public enum Verbosity {
+		QUIET,   //nothing
+		STATUS,  //the memory status every STATUS_INTERVAL ticks
+		EVENTS   //the status plus a line for every allocation, release and failure
+	}
+
+	//when memory is compacted to merge the holes scattered between allocated partitions
+	public enum Compaction {
+		NONE,        //never
+		ON_FAILURE,  //when a waiting process fits in the free memory but not in any one hole
+		THRESHOLD,   //whenever the fragmentation after a release is above the limit (percent)
+		INCREMENTAL  //a little at a time, moving at most the limit in KB per tick on average
+	}
+
+	private MemoryManager allocator;
+	private PriorityQueue<Running> running; //admitted processes, ordered by the tick they are released at
+	private WaitingQueue waitingQueue; //processes that did not fit yet
+	private ProcessRegistry registry; //processes of the run by id
+	private Iterator<Process> source; //processes still to arrive in a streamed run, null for a list
+	private Process arriving; //next process of the stream to arrive, null once the stream is done
+	private TraceWriter recorder; //captures every admission as a trace record, if set
+	private MetricsExporter metrics; //samples the metrics at fixed intervals, if set
+	private Histogram waits = new Histogram(); //ticks each admitted process spent waiting
+	private int[] releaseIds = new int[16]; //ids of the processes released on the current tick
+	private Process[] releaseProcesses = new Process[16]; //the processes themselves, in the same order
+	private int[] released = new int[16]; //KB freed for each of them
+	private long tick; //current tick of the clock
+	private long admitted; //number of admissions so far, breaks ties between releases on the same tick
+	private EventSink sink; //where events and status snapshots are written
+	private Verbosity verbosity = Verbosity.EVENTS;
+	private StringBuilder line = new StringBuilder(); //reused to format output without building strings
+	private int waited; //number of processes that had to wait for memory
+	private long totalWait; //ticks spent waiting, summed over all processes
+	private int maxWaiting; //longest the waiting queue got
+	private int stuck; //processes given up on because they could never fit
+	private Compaction compaction = Compaction.NONE;
+	private int compactionLimit; //fragmentation percent for THRESHOLD, KB per tick for INCREMENTAL
+	private long compactedAt; //tick incremental compaction has spent its budget up to, ahead of the clock while in debt
+	private long relocated; //KB moved by compaction during the run
+	private int compactions; //compaction passes that moved anything
+	private long holeTicks; //number of holes times the ticks there were that many, summed up to heldTo
+	private long heldTo; //tick holeTicks covers up to
+
+	//an admitted process and the tick its memory is released at
+	private static class Running {
+		Process process;
+		long finish;
+		long order;
+
+		Running(Process process, long finish, long order) {
+			this.process = process;
+			this.finish = finish;
+			this.order = order;
+		}
+	}
+
+	// constructor, retries every waiting process that fits in arrival order
+	public Simulation(MemoryManager allocator) {
+		this(allocator, WaitingQueue.Policy.FIRST_FIT);
+	}
+
+	// constructor
+	public Simulation(MemoryManager allocator, WaitingQueue.Policy admission) {
+		this.allocator = allocator;
+		//processes finishing on the same tick are released in the order they were admitted
+		this.running = new PriorityQueue<>((o1, o2) -> o1.finish != o2.finish
+				? Long.compare(o1.finish, o2.finish)
+				: Long.compare(o1.order, o2.order));
+		this.waitingQueue = new WaitingQueue(admission);
+		this.registry = new ProcessRegistry();
+		this.sink = WriterSink.stdout();
+	}
+
+	//runs until every process has been released, returns the number of ticks simulated
+	public long run(List<Process> processes) {
+		start(processes);
+		advance(Long.MAX_VALUE);
+		return tick;
+	}
+
+	//runs until every process of the stream has arrived and been released, returns the number of ticks simulated
+	public long run(Iterator<Process> processes) {
+		start(processes);
+		advance(Long.MAX_VALUE);
+		return tick;
+	}
+
+	//takes processes from the stream as they arrive, in order of their arrival ticks. Each is registered on arrival
+	//and forgotten on release, so the run holds only the processes that are running or waiting
+	public void start(Iterator<Process> processes) {
+		tick = 0;
+		source = processes;
+		arriving = source.hasNext() ? source.next() : null;
+	}
+
+	//registers the processes and admits every one that fits at tick 0, the rest wait
+	public void start(List<Process> processes) {
+		tick = 0;
+		for (Process process : processes) {
+			registry.register(process);
+		}
+		//goes through the process and finds if they can fit in a memory hole; if not the process is sent to the waiting queue
+		for (Process process : processes) {
+			arrive(process, 0);
+		}
+		sink.flush();
+	}
+
+	//admits a process that arrives at the given tick if it fits, or puts it on hold
+	private void arrive(Process process, long at) {
+		if (waitingQueue.mustWait() || !admit(process, at)) {
+			if (verbosity == Verbosity.EVENTS) {
+				log().append("Failed to allocate memory for process ").append(process.getName()).append(", putting it on hold.");
+				endLog();
+			}
+			waitingQueue.add(process);
+			waited++;
+			maxWaiting = Math.max(maxWaiting, waitingQueue.size());
+		}
+	}
+
+	//handles every release and arrival up to and including tick until, returns true once every process has been
+	//released. Stopping leaves the simulation between two events, ready to be checkpointed or advanced further
+	public boolean advance(long until) {
+		while (!running.isEmpty() || !waitingQueue.isEmpty() || arriving != null) {
+			if (running.isEmpty() && arriving == null) {
+				//nothing is left to release, so the waiting processes can never fit
+				for (Process process : waitingQueue.toList()) {
+					if (verbosity == Verbosity.EVENTS) {
+						log().append("Process ").append(process.getName()).append(" can never fit in memory, giving up on it.");
+						endLog();
+					}
+				}
+				stuck = waitingQueue.size();
+				waitingQueue.clear();
+				break;
+			}
+			//nothing changes until the next release or arrival, so only the status snapshots and samples in between
+			//are written
+			long next = running.isEmpty() ? arriving.getArrival() : running.peek().finish;
+			if (arriving != null) {
+				next = Math.min(next, arriving.getArrival());
+			}
+			if (next > until) {
+				sink.flush();
+				return false;
+			}
+			for (long t = nextStatusTick(tick); verbosity != Verbosity.QUIET && t < next; t += STATUS_INTERVAL) {
+				printStatus(t);
+			}
+			for (long t = metrics != null ? intervalEnd(tick, metrics.getInterval()) : next; t < next; t += metrics.getInterval()) {
+				metrics.sample(t, this);
+			}
+			//the hole count only changes at events, so it held since the last one
+			holeTicks += (long) allocator.getHoleCount() * (next - heldTo);
+			heldTo = next;
+			tick = next;
+
+			// Release every process whose time is up, all in one batch
+			int releasing = 0;
+			while (!running.isEmpty() && running.peek().finish == tick) {
+				Process process = running.poll().process;
+				process.setTime(0);
+				if (releasing == releaseIds.length) {
+					releaseIds = Arrays.copyOf(releaseIds, releasing * 2);
+					releaseProcesses = Arrays.copyOf(releaseProcesses, releasing * 2);
+					released = new int[releasing * 2];
+				}
+				releaseIds[releasing] = process.getId();
+				releaseProcesses[releasing++] = process;
+			}
+			//memory released on a tick is only free from the next one, so every process admitted after a release,
+			//waiting or just arrived, starts then. Arrivals on a tick without releases start right away
+			long start = releasing > 0 ? tick + 1 : tick;
+			if (releasing > 0) {
+				allocator.release(releaseIds, releasing, released);
+				for (int i = 0; i < releasing && verbosity == Verbosity.EVENTS; i++) {
+					if (released[i] != -1) {
+						log().append("Released ").append(released[i]).append("KB memory from process ").append(releaseProcesses[i].getName());
+						endLog();
+					}
+				}
+				for (int i = 0; i < releasing && source != null; i++) {
+					registry.release(releaseIds[i]);
+					releaseProcesses[i] = null;
+				}
+
+				// Memory was just freed, so try to allocate memory for the processes on hold
+				compactBeforeAdmit();
+				waitingQueue.admit(allocator, (process, allocated) -> admitted(process, allocated, start));
+				if (compaction == Compaction.ON_FAILURE && !waitingQueue.isEmpty()) {
+					//the next candidate failed, retry once the free memory is one hole if that is big enough to help
+					int needed = allocator.reserve(waitingQueue.nextSize());
+					if (needed <= allocator.getFreeMemory() && allocator.largestFree() < needed) {
+						compact(Integer.MAX_VALUE);
+						waitingQueue.admit(allocator, (process, allocated) -> admitted(process, allocated, start));
+					}
+				}
+			}
+
+			//processes arriving now get what the releases left, after the ones that were already waiting
+			while (arriving != null && arriving.getArrival() == tick) {
+				registry.register(arriving);
+				arrive(arriving, start);
+				arriving = source.hasNext() ? source.next() : null;
+				if (arriving != null && arriving.getArrival() < tick) {
+					throw new IllegalArgumentException("Process " + arriving.getName() + " arrives at tick "
+							+ arriving.getArrival() + ", before the one ahead of it in the stream");
+				}
+			}
+
+			if (verbosity != Verbosity.QUIET && nextStatusTick(tick) == tick) {
+				printStatus(tick);
+			}
+			if (metrics != null && intervalEnd(tick, metrics.getInterval()) == tick) {
+				metrics.sample(tick, this);
+			}
+			tick++;
+		}
+		sink.flush();
+		return true;
+	}
+
+	//tries to allocate memory for a process whose time starts counting down at the given tick
+	private boolean admit(Process process, long start) {
+		int allocatedSize = allocator.allocate(process.getId(), process.getSize(), process.getTime());
+		if (allocatedSize == -1) {
+			return false;
+		}
+		admitted(process, allocatedSize, start);
+		return true;
+	}
+
+	//starts a process that was given allocatedSize KB, its time counting down from the given tick
+	private void admitted(Process process, int allocatedSize, long start) {
+		if (verbosity == Verbosity.EVENTS) {
+			log().append("Allocated ").append(allocatedSize).append("KB memory for process ").append(process.getName());
+			endLog();
+		}
+		running.add(new Running(process, start + process.getTime(), admitted++));
+		if (recorder != null) {
+			try {
+				recorder.append(start, process.getSize(), process.getTime());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		totalWait += start - process.getArrival();
+		waits.record(start - process.getArrival());
+	}
+
+	//compacts memory at the current tick if the compaction policy calls for it before the waiting processes are retried
+	private void compactBeforeAdmit() {
+		switch (compaction) {
+			case THRESHOLD:
+				if (allocator.fragmentation() > compactionLimit) {
+					compact(Integer.MAX_VALUE);
+				}
+				break;
+			case INCREMENTAL:
+				//the clock skipped the quiet ticks since the last event, so their budget is spent now. Partitions move
+				//whole, so a pass can overshoot its budget; the overshoot is owed by the following ticks, which get no
+				//pass until it is paid off. Budget a pass does not use is not saved up
+				long budget = (tick - compactedAt) * compactionLimit;
+				if (budget <= 0) {
+					break;
+				}
+				long moved = compact((int) Math.min(budget, Integer.MAX_VALUE));
+				compactedAt = tick + (Math.max(0, moved - budget) + compactionLimit - 1) / compactionLimit;
+				break;
+			default:
+				break;
+		}
+	}
+
+	//runs one compaction pass of up to maxKB and accounts for the memory moved, returns the KB moved
+	private int compact(int maxKB) {
+		int moved = allocator.compact(maxKB);
+		if (moved == 0) {
+			return 0;
+		}
+		relocated += moved;
+		compactions++;
+		if (verbosity == Verbosity.EVENTS) {
+			log().append("Compacted memory, relocated ").append(moved).append("KB");
+			endLog();
+		}
+		return moved;
+	}
+
+	//writes everything needed to resume the run later: the clock, the processes, the running and waiting processes,
+	//the statistics so far and the memory. Output, compaction, metrics and recorder settings are not part of it
+	//a streamed run cannot be written, as the stream's position is not part of the simulation
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		if (source != null) {
+			throw new IllegalStateException("Only simulations of a list of processes can be checkpointed");
+		}
+		out.writeLong(tick);
+		out.writeLong(admitted);
+		out.writeInt(registry.size());
+		for (int id = 0; id < registry.size(); id++) {
+			Process process = registry.get(id);
+			out.writeUTF(process.getName());
+			out.writeInt(process.getSize());
+			out.writeInt(process.getTime());
+		}
+		out.writeInt(running.size());
+		for (Running r : running) {
+			out.writeInt(r.process.getId());
+			out.writeLong(r.finish);
+			out.writeLong(r.order);
+		}
+		waitingQueue.writeTo(out);
+		out.writeInt(waited);
+		out.writeLong(totalWait);
+		out.writeInt(maxWaiting);
+		out.writeInt(stuck);
+		out.writeLong(relocated);
+		out.writeInt(compactions);
+		out.writeLong(compactedAt);
+		out.writeLong(holeTicks);
+		out.writeLong(heldTo);
+		waits.writeTo(out);
+		allocator.writeTo(out);
+	}
+
+	//a simulation in the state a checkpoint was written in, ready to advance. A fit policy other than the saved one
+	//can be given to continue from the same memory with a different strategy (null keeps the saved one)
+	public static Simulation readCheckpoint(DataInput in, String policy) throws IOException {
+		long tick = in.readLong();
+		long admitted = in.readLong();
+		ProcessRegistry registry = new ProcessRegistry();
+		int processes = in.readInt();
+		for (int id = 0; id < processes; id++) {
+			registry.register(new Process(in.readUTF(), in.readInt(), in.readInt()));
+		}
+		List<Running> running = new ArrayList<>();
+		for (int n = in.readInt(); n > 0; n--) {
+			running.add(new Running(registry.get(in.readInt()), in.readLong(), in.readLong()));
+		}
+		WaitingQueue waitingQueue = WaitingQueue.readFrom(in, registry);
+		int waited = in.readInt();
+		long totalWait = in.readLong();
+		int maxWaiting = in.readInt();
+		int stuck = in.readInt();
+		long relocated = in.readLong();
+		int compactions = in.readInt();
+		long compactedAt = in.readLong();
+		long holeTicks = in.readLong();
+		long heldTo = in.readLong();
+		Histogram waits = Histogram.readFrom(in);
+		Simulation sim = new Simulation(MemoryManager.readFrom(in, policy), waitingQueue.getPolicy());
+		sim.tick = tick;
+		sim.admitted = admitted;
+		sim.registry = registry;
+		sim.running.addAll(running);
+		sim.waitingQueue = waitingQueue;
+		sim.waited = waited;
+		sim.totalWait = totalWait;
+		sim.maxWaiting = maxWaiting;
+		sim.stuck = stuck;
+		sim.relocated = relocated;
+		sim.compactions = compactions;
+		sim.compactedAt = compactedAt;
+		sim.holeTicks = holeTicks;
+		sim.heldTo = heldTo;
+		sim.waits = waits;
+		return sim;
+	}
+
+	//starts an event message under a separator line, the caller appends the message and calls endLog
+	private StringBuilder log() {
+		line.setLength(0);
+		return line.append(ContigousMemoryAllocator.BANNER).append("\n\n");
+	}
+
+	private void endLog() {
+		sink.write(line.append('\n'));
+	}
+
+	//records every admission (tick, size and time) into a trace that TraceReplay can play back
+	public void setRecorder(TraceWriter recorder) {
+		this.recorder = recorder;
+	}
+
+	//compacts memory by the given policy, limit is the fragmentation percent for THRESHOLD and the KB moved
+	//per tick for INCREMENTAL (no compaction by default)
+	public void setCompaction(Compaction compaction, int limit) {
+		this.compaction = compaction;
+		this.compactionLimit = limit;
+	}
+
+	//writes a row of metrics at the end of every interval of the exporter's ticks
+	public void setMetrics(MetricsExporter metrics) {
+		this.metrics = metrics;
+	}
+
+	//parses the mode of a none, failure, threshold:<percent> or incremental:<KB per tick> compaction setting
+	public static Compaction parseCompaction(String spec) {
+		switch (spec.split(":", 2)[0]) {
+			case "none":
+				return Compaction.NONE;
+			case "failure":
+				return Compaction.ON_FAILURE;
+			case "threshold":
+				return Compaction.THRESHOLD;
+			case "incremental":
+				return Compaction.INCREMENTAL;
+			default:
+				throw new IllegalArgumentException("Unknown compaction: " + spec);
+		}
+	}
+
+	//parses the limit of a compaction setting, 50% fragmentation or 1 KB per tick when it has none
+	//a threshold must be a percent from 0 to 100 and an incremental limit at least 1 KB, none and failure take none
+	public static int parseCompactionLimit(String spec) {
+		Compaction compaction = parseCompaction(spec);
+		String[] parts = spec.split(":", 2);
+		if (parts.length == 1) {
+			return compaction == Compaction.THRESHOLD ? 50 : 1;
+		}
+		int limit = Integer.parseInt(parts[1]);
+		switch (compaction) {
+			case THRESHOLD:
+				if (limit < 0 || limit > 100) {
+					throw new IllegalArgumentException("compaction threshold must be between 0 and 100");
+				}
+				break;
+			case INCREMENTAL:
+				if (limit < 1) {
+					throw new IllegalArgumentException("incremental compaction limit must be at least 1");
+				}
+				break;
+			default:
+				throw new IllegalArgumentException(parts[0] + " compaction takes no limit");
+		}
+		return limit;
+	}
+
+	//sends output to the given sink at the given verbosity (stdout with every event by default)
+	public void setOutput(EventSink sink, Verbosity verbosity) {
+		this.sink = sink;
+		this.verbosity = verbosity;
+	}
+
+	//ticks simulated, up to and including the last release
+	public long getTicks() {
+		return tick;
+	}
+
+	public int getWaited() {
+		return waited;
+	}
+
+	public long getTotalWait() {
+		return totalWait;
+	}
+
+	public int getMaxWaiting() {
+		return maxWaiting;
+	}
+
+	public MemoryManager getAllocator() {
+		return allocator;
+	}
+
+	//processes holding memory right now
+	public int getRunning() {
+		return running.size();
+	}
+
+	//processes waiting for memory right now
+	public int getWaiting() {
+		return waitingQueue.size();
+	}
+
+	//ticks each admitted process waited before it was admitted
+	public Histogram getWaitHistogram() {
+		return waits;
+	}
+
+	//processes of the run by id
+	public ProcessRegistry getRegistry() {
+		return registry;
+	}
+
+	public int getStuck() {
+		return stuck;
+	}
+
+	//number of holes averaged over the ticks simulated so far, weighting each count by how long it held
+	public double getAverageHoles() {
+		return heldTo > 0 ? (double) holeTicks / heldTo : 0;
+	}
+
+	//KB moved by compaction during the run
+	public long getRelocated() {
+		return relocated;
+	}
+
+	public int getCompactions() {
+		return compactions;
+	}
+
+	//first tick at or after t that ends with a status snapshot
+	private static long nextStatusTick(long t) {
+		return intervalEnd(t, STATUS_INTERVAL);
+	}
+
+	//first tick at or after t that is the last tick of an interval
+	private static long intervalEnd(long t, long interval) {
+		return (t / interval) * interval + interval - 1;
+	}
+
+	//prints the memory as it stands at the end of tick t
+	private void printStatus(long t) {
+		for (Running r : running) {
+			r.process.setTime((int) (r.finish - t - 1)); //time the process has left after this tick
+		}
+		line.setLength(0);
+		allocator.appendStatus(registry, line);
+		allocator.appendMemoryStats(line);
+		sink.write(line);
+	}
+}
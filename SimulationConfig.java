@@ -0,0 +1,261 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+//settings of one simulation run, read from a properties file and key=value arguments and checked as they are set
+//keys: policy, seed, memory, procs, sizeMax, time, sizes, lifetimes, admission, compaction, output, sink, header,
+//instrument, arrivals, gap
+//the keys of info.txt (MEMORY_MAX, PROC_SIZE_MAX, NUM_PROC, MAX_PROC_TIME) are accepted too
+public class SimulationConfig {
+
+	//what a headless run prints
+	public enum Output {
+		SUMMARY,  //one line of key=value results
+		CSV,      //one comma separated line of results, after a header line unless header=false
+		JSON,     //one JSON object of results
+		EVENTS    //every allocation, release and status snapshot, then the summary
+	}
+
+	//how events are written when output=events
+	public enum Sink {
+		DIRECT,  //by the simulation thread, which waits on stdout
+		ASYNC    //by a background thread fed through an AsyncSink ring, so the simulation never waits on I/O
+	}
+
+	private static final int ASYNC_RING = 1 << 14; //event lines an async sink buffers before the simulation waits
+
+	private String policy = "best";
+	private long seed = 1;
+	private int memory = 1024;
+	private int procs = 10;
+	private int sizeMax = 100;
+	private int time = 10000;
+	private WorkloadGenerator.Distribution sizes = WorkloadGenerator.Distribution.UNIFORM;
+	private WorkloadGenerator.Distribution lifetimes = WorkloadGenerator.Distribution.UNIFORM;
+	private WorkloadGenerator.Arrivals arrivals = WorkloadGenerator.Arrivals.BATCH;
+	private double gap = 10; //mean ticks between arrivals
+	private WaitingQueue.Policy admission = WaitingQueue.Policy.FIRST_FIT;
+	private String compaction = "none";
+	private Output output = Output.SUMMARY;
+	private Sink sink = Sink.DIRECT;
+	private boolean header = true;
+	private boolean instrument = false;
+
+	//defaults, overridden by the file named by a config=<file> argument and then by the other arguments
+	public static SimulationConfig fromArgs(String[] args) throws IOException {
+		SimulationConfig config = new SimulationConfig();
+		for (String arg : args) {
+			if (arg.startsWith("config=")) {
+				config.load(Paths.get(arg.substring("config=".length())));
+			}
+		}
+		for (String arg : args) {
+			String[] kv = arg.split("=", 2);
+			if (kv.length != 2) {
+				throw new IllegalArgumentException("Expected key=value but got: " + arg);
+			}
+			if (!kv[0].equals("config")) {
+				config.set(kv[0], kv[1]);
+			}
+		}
+		return config;
+	}
+
+	//sets every key of a properties file, which may also be in the KEY = value form of info.txt
+	public void load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(in);
+		}
+		for (String key : properties.stringPropertyNames()) {
+			set(key, properties.getProperty(key).trim());
+		}
+	}
+
+	//sets one key, throwing IllegalArgumentException on an unknown key or a bad value
+	public void set(String key, String value) {
+		boolean known;
+		try {
+			known = apply(key, value);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value
+					+ (e.getMessage() != null ? " (" + e.getMessage() + ")" : ""), e);
+		}
+		if (!known) {
+			throw new IllegalArgumentException("Unknown setting: " + key);
+		}
+	}
+
+	//sets one key from its text, false if there is no such key
+	private boolean apply(String key, String value) {
+		switch (key) {
+			case "policy":
+				MemoryManager.forPolicy(value, 1); //fails on a bad name
+				policy = value;
+				break;
+			case "seed":
+				seed = Long.parseLong(value);
+				break;
+			case "memory":
+			case "MEMORY_MAX":
+				memory = positive(value);
+				break;
+			case "procs":
+			case "NUM_PROC":
+				int n = Integer.parseInt(value);
+				if (n < 0) {
+					throw new IllegalArgumentException("must not be negative");
+				}
+				procs = n;
+				break;
+			case "sizeMax":
+			case "PROC_SIZE_MAX":
+				sizeMax = positive(value);
+				break;
+			case "time":
+			case "MAX_PROC_TIME":
+				time = positive(value);
+				break;
+			case "sizes":
+				sizes = WorkloadGenerator.Distribution.valueOf(value.toUpperCase(Locale.ROOT));
+				break;
+			case "lifetimes":
+				lifetimes = WorkloadGenerator.Distribution.valueOf(value.toUpperCase(Locale.ROOT));
+				break;
+			case "arrivals":
+				arrivals = WorkloadGenerator.Arrivals.valueOf(value.toUpperCase(Locale.ROOT));
+				break;
+			case "gap":
+				gap = Double.parseDouble(value);
+				if (!(gap > 0) || Double.isInfinite(gap)) {
+					throw new IllegalArgumentException("must be above 0");
+				}
+				break;
+			case "admission":
+				admission = WaitingQueue.Policy.valueOf(value.toUpperCase(Locale.ROOT));
+				break;
+			case "compaction":
+				Simulation.parseCompactionLimit(value); //fails on a bad setting
+				compaction = value;
+				break;
+			case "output":
+				output = Output.valueOf(value.toUpperCase(Locale.ROOT));
+				break;
+			case "sink":
+				sink = Sink.valueOf(value.toUpperCase(Locale.ROOT));
+				break;
+			case "header":
+				header = bool(value);
+				break;
+			case "instrument":
+				instrument = bool(value);
+				break;
+			default:
+				return false;
+		}
+		return true;
+	}
+
+	//parses a value that must be at least 1
+	private static int positive(String value) {
+		int n = Integer.parseInt(value);
+		if (n < 1) {
+			throw new IllegalArgumentException("must be at least 1");
+		}
+		return n;
+	}
+
+	//parses a value that must be true or false
+	private static boolean bool(String value) {
+		if (!value.equals("true") && !value.equals("false")) {
+			throw new IllegalArgumentException("must be true or false");
+		}
+		return Boolean.parseBoolean(value);
+	}
+
+	//the processes this configuration describes, all arriving at tick 0 whatever the arrivals setting
+	public List<Process> workload() {
+		return WorkloadGenerator.generate(seed, procs, sizeMax, time, sizes, lifetimes);
+	}
+
+	//the same processes drawn one at a time, arriving as the arrivals and gap settings say
+	public Iterator<Process> stream() {
+		return WorkloadGenerator.stream(seed, procs, sizeMax, time, sizes, lifetimes, arrivals, gap);
+	}
+
+	//a simulation on a fresh allocator with this configuration's policy, admission and compaction, wrapped in an
+	//InstrumentedMemory when instrument=true
+	public Simulation simulation() {
+		MemoryManager allocator = MemoryManager.forPolicy(policy, memory);
+		if (instrument) {
+			allocator = new InstrumentedMemory(allocator);
+		}
+		Simulation sim = new Simulation(allocator, admission);
+		sim.setCompaction(Simulation.parseCompaction(compaction), Simulation.parseCompactionLimit(compaction));
+		return sim;
+	}
+
+	//a new sink on stdout for the events of a run, which the caller must close to write out everything
+	public EventSink eventSink() {
+		return sink == Sink.ASYNC ? new AsyncSink(WriterSink.stdout(), ASYNC_RING) : WriterSink.stdout();
+	}
+
+	public String getPolicy() {
+		return policy;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getMemory() {
+		return memory;
+	}
+
+	public int getProcs() {
+		return procs;
+	}
+
+	public int getSizeMax() {
+		return sizeMax;
+	}
+
+	public int getTime() {
+		return time;
+	}
+
+	public String getCompaction() {
+		return compaction;
+	}
+
+	public Output getOutput() {
+		return output;
+	}
+
+	public Sink getSink() {
+		return sink;
+	}
+
+	public boolean isHeader() {
+		return header;
+	}
+
+	public WorkloadGenerator.Arrivals getArrivals() {
+		return arrivals;
+	}
+
+	public double getGap() {
+		return gap;
+	}
+
+	public boolean isInstrument() {
+		return instrument;
+	}
+}
@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//streams the records of a binary trace written by TraceWriter through a memory-mapped window that slides along the file
+//only one window is mapped at a time, so a trace of any length is read in constant memory
+//usage: while (reader.next()) { reader.timestamp(); reader.size(); reader.lifetime(); }
+public class TraceReader implements AutoCloseable {
+	private static final long WINDOW_RECORDS = 1 << 20; //records mapped at once (16 MB)
+
+	private FileChannel channel;
+	private long count; //records in the file
+	private long index = -1; //record the accessors return
+	private MappedByteBuffer window;
+	private long windowStart; //first record covered by the window
+	private long windowEnd; //first record after the window
+	private long timestamp;
+	private int size;
+	private int lifetime;
+
+	// constructor, checks the header and closes the file again if it is not a readable trace
+	public TraceReader(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if (channel.size() < TraceWriter.HEADER_BYTES) {
+				throw new IOException(file + " is not a binary trace");
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TraceWriter.HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(0) != TraceWriter.MAGIC) {
+				throw new IOException(file + " is not a binary trace");
+			}
+			if (header.getInt(4) != TraceWriter.VERSION) {
+				throw new IOException(file + " has unsupported trace version " + header.getInt(4));
+			}
+			this.count = header.getLong(8);
+			if (count < 0 || count > (channel.size() - TraceWriter.HEADER_BYTES) / TraceWriter.RECORD_BYTES) {
+				throw new IOException(file + " is truncated: expected " + count + " records");
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	//moves to the next record, false once the trace is exhausted
+	public boolean next() throws IOException {
+		if (++index >= count) {
+			return false;
+		}
+		if (index >= windowEnd) {
+			windowStart = index;
+			windowEnd = Math.min(count, index + WINDOW_RECORDS);
+			window = channel.map(FileChannel.MapMode.READ_ONLY,
+					TraceWriter.HEADER_BYTES + windowStart * TraceWriter.RECORD_BYTES,
+					(windowEnd - windowStart) * TraceWriter.RECORD_BYTES);
+			window.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		int at = (int) (index - windowStart) * TraceWriter.RECORD_BYTES;
+		timestamp = window.getLong(at);
+		size = window.getInt(at + 8);
+		lifetime = window.getInt(at + 12);
+		return true;
+	}
+
+	//position of the current record in the trace, which identifies its allocation
+	public long index() {
+		return index;
+	}
+
+	public long timestamp() {
+		return timestamp;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int lifetime() {
+		return lifetime;
+	}
+
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+}
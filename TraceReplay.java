@@ -0,0 +1,264 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+//replays a binary allocation trace straight against a ContigousMemoryAllocator or PagedMemoryAllocator
+//each record is allocated at its arrival tick and released lifetime ticks later; a record that does not fit is
+//counted as a failure and dropped, like an out of memory error. Only the live allocations are held in memory,
+//so the replay runs in constant memory however long the trace is
+//usage: java TraceReplay import <text trace> <binary trace>
+//       java TraceReplay record <binary trace> [seed] [procs] [sizeMax] [time] [policy] [memory]
+//       java TraceReplay replay <binary trace> [policy] [memory]
+//exit status as HeadlessRunner's: 0 done, 1 a trace could not be read or written, 2 bad arguments
+public class TraceReplay {
+	private MemoryManager allocator;
+	private long[] heapEnd = new long[64]; //release tick of each live allocation, as a binary min-heap
+	private int[] heapId = new int[64]; //allocator id of the allocation at the same heap position
+	private int live; //allocations currently in memory
+	private int[] freeIds = new int[64]; //allocator ids given back by releases, reused before new ones
+	private int freeIdCount;
+	private int nextId;
+	private long records; //records replayed
+	private long failed; //records that did not fit
+	private long used; //KB currently allocated
+	private long peakUsed;
+	private int peakLive;
+	private long clock; //tick of the last event
+
+	// constructor
+	public TraceReplay(MemoryManager allocator) {
+		this.allocator = allocator;
+	}
+
+	//replays every record of the trace, then releases whatever is still live
+	public void run(TraceReader trace) throws IOException {
+		while (trace.next()) {
+			long now = trace.timestamp();
+			//releases due by now happen before the arrival, as in Simulation
+			while (live > 0 && heapEnd[0] <= now) {
+				releaseFirst();
+			}
+			clock = now;
+			records++;
+			int id = freeIdCount > 0 ? freeIds[--freeIdCount] : nextId++;
+			int alloc = allocator.allocate(id, trace.size(), trace.lifetime());
+			if (alloc == -1) {
+				failed++;
+				freeIds = push(freeIds, freeIdCount++, id);
+				continue;
+			}
+			used += alloc;
+			peakUsed = Math.max(peakUsed, used);
+			pushLive(now + trace.lifetime(), id);
+			peakLive = Math.max(peakLive, live);
+		}
+		while (live > 0) {
+			releaseFirst();
+		}
+	}
+
+	//appends a summary of the replay to out
+	public void appendSummary(StringBuilder out) {
+		out.append("Records replayed: ").append(records).append('\n');
+		out.append("Failed allocations: ").append(failed).append(" (")
+				.append(records > 0 ? 100.0 * failed / records : 0).append("%)\n");
+		out.append("Peak memory in use: ").append(peakUsed).append(" KB of ").append(allocator.getSize()).append(" KB\n");
+		out.append("Peak live allocations: ").append(peakLive).append('\n');
+		out.append("Last tick: ").append(clock).append('\n');
+	}
+
+	public long getRecords() {
+		return records;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public long getPeakUsed() {
+		return peakUsed;
+	}
+
+	public int getPeakLive() {
+		return peakLive;
+	}
+
+	//converts a text trace with one "timestamp name size lifetime" line per allocation (blank lines and lines
+	//starting with # are skipped, fields split on spaces, tabs or commas) to the binary format, one line at a time
+	public static long importText(Path text, Path binary) throws IOException {
+		try (BufferedReader in = Files.newBufferedReader(text, StandardCharsets.UTF_8);
+				TraceWriter out = new TraceWriter(binary)) {
+			String line;
+			long lineNumber = 0;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("[\\s,]+");
+				if (fields.length != 4) {
+					throw new IllegalArgumentException(text + " line " + lineNumber + ": expected timestamp name size lifetime");
+				}
+				try {
+					out.append(Long.parseLong(fields[0]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(text + " line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+			return out.getCount();
+		}
+	}
+
+	//releases the allocation that ends first
+	private void releaseFirst() {
+		long end = heapEnd[0];
+		int id = heapId[0];
+		live--;
+		//move the last entry to the top and sift it down
+		long lastEnd = heapEnd[live];
+		int lastId = heapId[live];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= live) {
+				break;
+			}
+			if (child + 1 < live && heapEnd[child + 1] < heapEnd[child]) {
+				child++;
+			}
+			if (heapEnd[child] >= lastEnd) {
+				break;
+			}
+			heapEnd[i] = heapEnd[child];
+			heapId[i] = heapId[child];
+			i = child;
+		}
+		heapEnd[i] = lastEnd;
+		heapId[i] = lastId;
+		clock = end;
+		used -= allocator.release(id);
+		freeIds = push(freeIds, freeIdCount++, id);
+	}
+
+	//adds a live allocation to the heap
+	private void pushLive(long end, int id) {
+		if (live == heapEnd.length) {
+			heapEnd = Arrays.copyOf(heapEnd, live * 2);
+			heapId = Arrays.copyOf(heapId, live * 2);
+		}
+		int i = live++;
+		while (i > 0 && heapEnd[(i - 1) / 2] > end) {
+			heapEnd[i] = heapEnd[(i - 1) / 2];
+			heapId[i] = heapId[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heapEnd[i] = end;
+		heapId[i] = id;
+	}
+
+	//stores value at index of a stack array, growing the array when it is full
+	private static int[] push(int[] stack, int index, int value) {
+		if (index == stack.length) {
+			stack = Arrays.copyOf(stack, stack.length * 2);
+		}
+		stack[index] = value;
+		return stack;
+	}
+
+	public static void main(String[] args) {
+		try {
+			run(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+		} catch (IOException e) {
+			System.err.println(describe(e));
+			System.exit(HeadlessRunner.IO_ERROR);
+		} catch (UncheckedIOException e) {
+			System.err.println(describe(e.getCause()));
+			System.exit(HeadlessRunner.IO_ERROR);
+		}
+	}
+
+	private static void run(String[] args) throws IOException {
+		if (args.length < 2) {
+			usage();
+		}
+		switch (args[0]) {
+			case "import": {
+				if (args.length != 3) {
+					usage();
+				}
+				long n;
+				try {
+					n = importText(Paths.get(args[1]), Paths.get(args[2]));
+				} catch (IllegalArgumentException e) {
+					throw new IOException(e.getMessage(), e); //a bad line of the text trace, which names it
+				}
+				System.out.println("Imported " + n + " records into " + args[2]);
+				break;
+			}
+			case "record": {
+				//runs a synthetic workload and captures every admission as a trace record
+				long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+				int procs = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+				int sizeMax = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+				int time = args.length > 5 ? Integer.parseInt(args[5]) : 10000;
+				String policy = args.length > 6 ? args[6] : "best";
+				int memory = args.length > 7 ? Integer.parseInt(args[7]) : 1024;
+				List<Process> processes = WorkloadGenerator.generate(seed, procs, sizeMax, time);
+				Simulation sim = new Simulation(MemoryManager.forPolicy(policy, memory));
+				sim.setOutput(EventSink.NONE, Simulation.Verbosity.QUIET);
+				try (TraceWriter out = new TraceWriter(Paths.get(args[1]))) {
+					sim.setRecorder(out);
+					sim.run(processes);
+					System.out.println("Recorded " + out.getCount() + " records into " + args[1]);
+				}
+				break;
+			}
+			case "replay": {
+				String policy = args.length > 2 ? args[2] : "best";
+				int memory = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+				TraceReplay replay = new TraceReplay(MemoryManager.forPolicy(policy, memory));
+				long start = System.nanoTime();
+				try (TraceReader in = new TraceReader(Paths.get(args[1]))) {
+					replay.run(in);
+				}
+				StringBuilder summary = new StringBuilder();
+				replay.appendSummary(summary);
+				summary.append("Replay time: ").append((System.nanoTime() - start) / 1_000_000).append("ms\n");
+				System.out.print(summary);
+				break;
+			}
+			default:
+				usage();
+		}
+	}
+
+	//one line naming the file an I/O error is about; the trace readers and writers name it in their own messages
+	private static String describe(IOException e) {
+		if (e instanceof NoSuchFileException) {
+			return "No such file: " + ((NoSuchFileException) e).getFile();
+		}
+		if (e instanceof AccessDeniedException) {
+			return "Permission denied: " + ((AccessDeniedException) e).getFile();
+		}
+		return e.getMessage();
+	}
+
+	private static void usage() {
+		System.err.println("usage: java TraceReplay import <text trace> <binary trace>");
+		System.err.println("       java TraceReplay record <binary trace> [seed] [procs] [sizeMax] [time] [policy] [memory]");
+		System.err.println("       java TraceReplay replay <binary trace> [policy] [memory]");
+		System.exit(HeadlessRunner.USAGE);
+	}
+}
@@ -0,0 +1,66 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//writes an allocation trace in the binary format read by TraceReader
+//the file is a 16 byte header (magic, version, record count) followed by one 16 byte record per allocation:
+//arrival tick (long), size in KB (int) and lifetime in ticks (int). Records must be in arrival order, and an
+//allocation is identified by its position in the file, so names are not stored
+public class TraceWriter implements AutoCloseable {
+	static final int MAGIC = 0x4D545243; //"MTRC"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+	static final int RECORD_BYTES = 16;
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private long count; //records written so far
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	// constructor, creates or truncates the file
+	public TraceWriter(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		this.buffer.putInt(MAGIC).putInt(VERSION).putLong(0); //the count is filled in on close
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	//adds one allocation to the trace
+	public void append(long timestamp, int size, int lifetime) throws IOException {
+		if (timestamp < lastTimestamp) {
+			throw new IllegalArgumentException("Trace records must be in arrival order: " + timestamp + " after " + lastTimestamp);
+		}
+		if (size <= 0 || lifetime < 0) {
+			throw new IllegalArgumentException("Invalid trace record: size " + size + ", lifetime " + lifetime);
+		}
+		if (buffer.remaining() < RECORD_BYTES) {
+			drain();
+		}
+		buffer.putLong(timestamp).putInt(size).putInt(lifetime);
+		lastTimestamp = timestamp;
+		count++;
+	}
+
+	public void close() throws IOException {
+		drain();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putLong(count).flip();
+		channel.write(header, 0);
+		channel.close();
+	}
+
+	//writes the buffered records to the file
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
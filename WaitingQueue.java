@@ -0,0 +1,346 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+//processes waiting for memory, indexed by size so that retries only attempt processes that could fit
+//first fit and smallest first hand the memory their candidates in batches, so a burst of admissions after a release
+//goes through the memory's batch allocate
+public class WaitingQueue {
+	private static final int BATCH = 64; //most candidates handed to the memory's batch allocate at once
+
+	//order in which waiting processes are retried once memory is freed
+	public enum Policy {
+		FIFO,           //only the oldest process is retried, and everything behind it waits until it fits
+		FIRST_FIT,      //every process that fits is admitted, oldest first
+		SMALLEST_FIRST  //every process that fits is admitted, smallest first
+	}
+
+	//a waiting process and its position in arrival order
+	private static class Waiting {
+		Process process;
+		long order;
+
+		Waiting(Process process, long order) {
+			this.process = process;
+			this.order = order;
+		}
+	}
+
+	//a size bucket being walked during a first fit pass
+	private static class Cursor {
+		ArrayDeque<Waiting> bucket;
+		Iterator<Waiting> rest; //the processes after next, only needed once the pass gets past the head
+		Waiting next;
+
+		Cursor(ArrayDeque<Waiting> bucket) {
+			this.bucket = bucket;
+			this.next = bucket.peek();
+		}
+
+		//moves to the next process of the bucket, false at its end
+		boolean advance() {
+			if (rest == null) {
+				rest = bucket.iterator();
+				rest.next();
+			}
+			next = rest.hasNext() ? rest.next() : null;
+			return next != null;
+		}
+	}
+
+	private Policy policy;
+	private TreeMap<Integer, ArrayDeque<Waiting>> bySize; //waiting processes by size, oldest first within each size
+	private int count; //number of waiting processes
+	private long arrivals; //number of processes added so far
+	private Process[] batch = new Process[BATCH]; //candidates of the batch being admitted, with their requests
+	private int[] batchIds = new int[BATCH];
+	private int[] batchSizes = new int[BATCH];
+	private int[] batchLifetimes = new int[BATCH];
+	private int[] batchAllocated = new int[BATCH];
+	private Cursor[] batchCursors = new Cursor[BATCH];
+	//size buckets being walked by a first fit pass, and the bucket of each process it admitted in order
+	private PriorityQueue<Cursor> cursors = new PriorityQueue<>((o1, o2) -> Long.compare(o1.next.order, o2.next.order));
+	private List<ArrayDeque<Waiting>> taken = new ArrayList<>();
+
+	// constructor
+	public WaitingQueue(Policy policy) {
+		this.policy = policy;
+		this.bySize = new TreeMap<>();
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	//true when a new arrival has to queue behind the processes already waiting instead of trying to allocate
+	public boolean mustWait() {
+		return policy == Policy.FIFO && count > 0;
+	}
+
+	//puts a process at the back of the queue
+	public void add(Process process) {
+		bySize.computeIfAbsent(process.getSize(), k -> new ArrayDeque<>()).add(new Waiting(process, arrivals++));
+		count++;
+	}
+
+	//the waiting processes in arrival order
+	public List<Process> toList() {
+		List<Waiting> all = new ArrayList<>(count);
+		for (ArrayDeque<Waiting> bucket : bySize.values()) {
+			all.addAll(bucket);
+		}
+		all.sort((o1, o2) -> Long.compare(o1.order, o2.order));
+		List<Process> processes = new ArrayList<>(count);
+		for (Waiting w : all) {
+			processes.add(w.process);
+		}
+		return processes;
+	}
+
+	//size of the process the policy would retry first (the oldest for FIFO, the smallest otherwise), -1 when empty
+	public int nextSize() {
+		if (count == 0) {
+			return -1;
+		}
+		if (policy != Policy.FIFO) {
+			return bySize.firstKey();
+		}
+		Waiting oldest = null;
+		for (ArrayDeque<Waiting> bucket : bySize.values()) {
+			if (oldest == null || bucket.peekFirst().order < oldest.order) {
+				oldest = bucket.peekFirst();
+			}
+		}
+		return oldest.process.getSize();
+	}
+
+	public void clear() {
+		bySize.clear();
+		count = 0;
+	}
+
+	//retries the waiting processes in policy order, allocating each candidate with its size and time as lifetime and
+	//handing every process admitted to admitted with the KB it got
+	//a process is only attempted if the largest free extent can hold it, and once a size fails every larger size is skipped
+	//because an allocation that fails for one size fails for all bigger ones. Returns the number admitted
+	public int admit(MemoryManager allocator, ObjIntConsumer<Process> admitted) {
+		switch (policy) {
+			case FIFO:
+				return admitFifo(allocator, admitted);
+			case SMALLEST_FIRST:
+				return admitSmallest(allocator, admitted);
+			default:
+				return admitFirstFit(allocator, admitted);
+		}
+	}
+
+	//the oldest process blocks everything behind it, so processes are allocated one at a time until one does not fit
+	private int admitFifo(MemoryManager allocator, ObjIntConsumer<Process> admitted) {
+		int admittedCount = 0;
+		while (count > 0) {
+			//the oldest process is the oldest head of any size bucket
+			ArrayDeque<Waiting> oldest = null;
+			for (ArrayDeque<Waiting> bucket : bySize.values()) {
+				if (oldest == null || bucket.peek().order < oldest.peek().order) {
+					oldest = bucket;
+				}
+			}
+			Process process = oldest.peek().process;
+			if (!fits(allocator, process.getSize())) {
+				break;
+			}
+			int allocated = allocator.allocate(process.getId(), process.getSize(), process.getTime());
+			if (allocated == -1) {
+				break;
+			}
+			poll(oldest);
+			admitted.accept(process, allocated);
+			admittedCount++;
+		}
+		return admittedCount;
+	}
+
+	//hands the waiting processes to the memory in batches smallest first, oldest first within a size, until one fails
+	//the processes admitted are always the head of the smallest bucket, so they are taken off the queue right away
+	private int admitSmallest(MemoryManager allocator, ObjIntConsumer<Process> admitted) {
+		int admittedCount = 0;
+		int limit = 1; //batch size, see admitFirstFit
+		while (count > 0) {
+			//nothing is allocated while a batch is filled, so the memory is only asked for its free space once per batch
+			int largest = allocator.largestFree();
+			if (allocator.reserve(bySize.firstKey()) > largest) {
+				break;
+			}
+			int n = fillSmallest(allocator, limit, largest);
+			allocate(allocator, n);
+			int before = admittedCount;
+			for (int i = 0; i < n && batchAllocated[i] != -1; i++) {
+				poll(bySize.firstEntry().getValue());
+				admitted.accept(batch[i], batchAllocated[i]);
+				admittedCount++;
+			}
+			Arrays.fill(batch, 0, n, null);
+			if (admittedCount - before < n) {
+				break; //every process after the one that failed is at least as big
+			}
+			limit = Math.min(limit * 2, BATCH);
+		}
+		return admittedCount;
+	}
+
+	//fills the batch with up to limit of the smallest waiting processes, as many as the free memory could hold
+	private int fillSmallest(MemoryManager allocator, int limit, int largest) {
+		long room = allocator.getFreeMemory();
+		int n = 0;
+		for (ArrayDeque<Waiting> bucket : bySize.values()) {
+			for (Waiting w : bucket) {
+				int reserve = allocator.reserve(w.process.getSize());
+				if (n == limit || reserve > largest || reserve > room) {
+					return n;
+				}
+				room -= reserve;
+				addToBatch(n++, w.process);
+			}
+		}
+		return n;
+	}
+
+	//walks the buckets small enough to fit oldest first, handing the candidates to the memory in batches
+	//memory only shrinks during a pass, so a bucket that cannot fit, or is as big as a size that failed, is done. The
+	//processes admitted from a bucket are always its oldest, so they are taken off the queue once the pass is over
+	private int admitFirstFit(MemoryManager allocator, ObjIntConsumer<Process> admitted) {
+		int largest = allocator.largestFree();
+		if (count == 0 || allocator.reserve(bySize.firstKey()) > largest) {
+			return 0;
+		}
+		for (ArrayDeque<Waiting> bucket : bySize.headMap(largest, true).values()) {
+			cursors.add(new Cursor(bucket));
+		}
+		int failedSize = Integer.MAX_VALUE; //smallest size that failed during this pass
+		//most passes after a release only admit one or two processes, so batches start small and double while every
+		//candidate in them is admitted
+		int limit = 1;
+		while (!cursors.isEmpty()) {
+			largest = allocator.largestFree();
+			long room = allocator.getFreeMemory(); //KB left for the batch if every candidate in it is admitted
+			int n = 0;
+			while (n < limit && !cursors.isEmpty()) {
+				Cursor cursor = cursors.peek();
+				Process process = cursor.next.process;
+				int reserve = allocator.reserve(process.getSize());
+				if (process.getSize() >= failedSize || reserve > largest) {
+					cursors.poll();
+					continue;
+				}
+				if (n > 0 && reserve > room) {
+					break; //tried again in the next batch, once it is known what the batch so far took
+				}
+				cursors.poll();
+				room -= reserve;
+				batchCursors[n] = cursor;
+				addToBatch(n++, process);
+				if (cursor.advance()) {
+					cursors.add(cursor);
+				}
+			}
+			if (n == 0) {
+				break;
+			}
+			int before = taken.size();
+			allocate(allocator, n);
+			for (int i = 0; i < n; i++) {
+				if (batchAllocated[i] == -1) {
+					failedSize = Math.min(failedSize, batchSizes[i]);
+				}
+				else {
+					admitted.accept(batch[i], batchAllocated[i]);
+					taken.add(batchCursors[i].bucket);
+				}
+			}
+			Arrays.fill(batch, 0, n, null);
+			Arrays.fill(batchCursors, 0, n, null);
+			if (allocator.reserve(bySize.firstKey()) > allocator.largestFree()) {
+				break; //not even the smallest waiting size fits any more, so the rest of the buckets are done
+			}
+			if (taken.size() - before == n) {
+				limit = Math.min(limit * 2, BATCH);
+			}
+		}
+		cursors.clear();
+		for (ArrayDeque<Waiting> bucket : taken) {
+			poll(bucket);
+		}
+		int admittedCount = taken.size();
+		taken.clear();
+		return admittedCount;
+	}
+
+	//allocates the first n processes of the batch, a batch of one on its own
+	private void allocate(MemoryManager allocator, int n) {
+		if (n == 1) {
+			batchAllocated[0] = allocator.allocate(batchIds[0], batchSizes[0], batchLifetimes[0]);
+		}
+		else {
+			allocator.allocate(batchIds, batchSizes, batchLifetimes, n, batchAllocated);
+		}
+	}
+
+	//puts a process in slot i of the batch, asking for its size for its time
+	private void addToBatch(int i, Process process) {
+		batch[i] = process;
+		batchIds[i] = process.getId();
+		batchSizes[i] = process.getSize();
+		batchLifetimes[i] = process.getTime();
+	}
+
+	//whether the largest free extent is big enough for what the memory would reserve for this size
+	private static boolean fits(MemoryManager allocator, int size) {
+		return allocator.reserve(size) <= allocator.largestFree();
+	}
+
+	//writes the policy and the waiting process ids with their arrival positions, for a checkpoint
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeByte(policy.ordinal());
+		out.writeLong(arrivals);
+		out.writeInt(count);
+		for (ArrayDeque<Waiting> bucket : bySize.values()) {
+			for (Waiting w : bucket) {
+				out.writeInt(w.process.getId());
+				out.writeLong(w.order);
+			}
+		}
+	}
+
+	//a queue holding the processes written by writeTo, looked up by id in the restored registry
+	public static WaitingQueue readFrom(DataInput in, ProcessRegistry registry) throws IOException {
+		WaitingQueue queue = new WaitingQueue(Policy.values()[in.readByte()]);
+		queue.arrivals = in.readLong();
+		int n = in.readInt();
+		//each bucket was written oldest first, so appending keeps its order
+		for (int i = 0; i < n; i++) {
+			Process process = registry.get(in.readInt());
+			queue.bySize.computeIfAbsent(process.getSize(), k -> new ArrayDeque<>()).add(new Waiting(process, in.readLong()));
+		}
+		queue.count = n;
+		return queue;
+	}
+
+	//removes the oldest process of a size bucket
+	private void poll(ArrayDeque<Waiting> bucket) {
+		Waiting w = bucket.poll();
+		if (bucket.isEmpty()) {
+			bySize.remove(w.process.getSize());
+		}
+		count--;
+	}
+}
@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+//builds the processes a simulation runs, reproducibly from a seed, either as a list that all arrives at tick 0 or
+//as a stream that draws each process only when it is asked for, with arrival times spread over the run
+public class WorkloadGenerator {
+	private static final double POWER_LAW_ALPHA = 1.5; //tail exponent of POWER_LAW, lower is heavier
+	private static final int BURST_LENGTH = 16; //processes in a BURSTY burst on average
+	private static final int BURST_SPEEDUP = 8; //how much closer together processes arrive inside a burst
+
+	//how process sizes and times are drawn between 1 and their maximum
+	public enum Distribution {
+		UNIFORM,     //every value equally likely
+		FIXED,       //always the maximum
+		EXPONENTIAL, //mostly small values with a long tail, averaging about a quarter of the maximum
+		POWER_LAW,   //a bounded Pareto: most values tiny, a few up to the maximum
+		BIMODAL      //one in ten from half the maximum up, the rest up to a sixteenth of it
+	}
+
+	//when processes arrive
+	public enum Arrivals {
+		BATCH,   //all at tick 0
+		POISSON, //independently, with exponential gaps averaging the mean gap
+		BURSTY   //in bursts of closely spaced arrivals separated by quiet spells, averaging the mean gap overall
+	}
+
+	//numProc processes named P1, P2, ... with sizes from 1 to procSizeMax KB and times from 1 to maxProcTime ticks
+	public static List<Process> generate(long seed, int numProc, int procSizeMax, int maxProcTime) {
+		return generate(seed, numProc, procSizeMax, maxProcTime, Distribution.UNIFORM, Distribution.UNIFORM);
+	}
+
+	//as above, with the sizes and times drawn from the given distributions
+	public static List<Process> generate(long seed, int numProc, int procSizeMax, int maxProcTime,
+			Distribution sizes, Distribution times) {
+		List<Process> processes = new ArrayList<>(numProc);
+		stream(seed, numProc, procSizeMax, maxProcTime, sizes, times, Arrivals.BATCH, 0).forEachRemaining(processes::add);
+		return processes;
+	}
+
+	//the same processes as generate for BATCH arrivals, drawn one at a time as the iterator is advanced, so a run
+	//of any length holds only the processes it has not finished with. Arrival ticks never decrease
+	public static Iterator<Process> stream(long seed, int numProc, int procSizeMax, int maxProcTime,
+			Distribution sizes, Distribution times, Arrivals arrivals, double meanGap) {
+		return new Iterator<Process>() {
+			private Random rand = new Random(seed);
+			private int drawn; //processes handed out so far
+			private double clock; //arrival time of the last process, before rounding down to a tick
+
+			public boolean hasNext() {
+				return drawn < numProc;
+			}
+
+			public Process next() {
+				if (drawn == numProc) {
+					throw new NoSuchElementException();
+				}
+				drawn++;
+				int size = draw(rand, sizes, procSizeMax);
+				int time = draw(rand, times, maxProcTime);
+				Process process = new Process("P" + drawn, size, time);
+				//the first process arrives at tick 0, every later one a gap after the one before
+				if (drawn > 1) {
+					clock += gap(rand, arrivals, meanGap);
+				}
+				process.setArrival((long) clock);
+				return process;
+			}
+		};
+	}
+
+	//ticks between one arrival and the next
+	private static double gap(Random rand, Arrivals arrivals, double meanGap) {
+		switch (arrivals) {
+			case POISSON:
+				return exponential(rand, meanGap);
+			case BURSTY: {
+				//one arrival in BURST_LENGTH ends a burst, and the quiet gap after it makes up the mean
+				double inBurst = meanGap / BURST_SPEEDUP;
+				if (rand.nextInt(BURST_LENGTH) == 0) {
+					return exponential(rand, BURST_LENGTH * meanGap - (BURST_LENGTH - 1) * inBurst);
+				}
+				return exponential(rand, inBurst);
+			}
+			default:
+				return 0;
+		}
+	}
+
+	//an exponentially distributed value with the given mean
+	private static double exponential(Random rand, double mean) {
+		return -Math.log(1 - rand.nextDouble()) * mean;
+	}
+
+	//a value from 1 to max
+	private static int draw(Random rand, Distribution distribution, int max) {
+		switch (distribution) {
+			case FIXED:
+				return max;
+			case EXPONENTIAL:
+				double value = -Math.log(1 - rand.nextDouble()) * max / 4;
+				return 1 + (int) Math.min(max - 1, value);
+			case POWER_LAW: {
+				//inverse of the bounded Pareto distribution on [1, max + 1)
+				double tail = 1 - Math.pow(max + 1, -POWER_LAW_ALPHA);
+				double x = Math.pow(1 - rand.nextDouble() * tail, -1 / POWER_LAW_ALPHA);
+				return (int) Math.min(max, x);
+			}
+			case BIMODAL:
+				if (rand.nextInt(10) == 0) {
+					return max / 2 + rand.nextInt(max - max / 2) + 1;
+				}
+				return rand.nextInt(Math.max(1, max / 16)) + 1;
+			default:
+				return rand.nextInt(max) + 1;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+//places each request in the largest hole
+public class WorstFitStrategy implements AllocationStrategy {
+	private ContigousMemoryAllocator memory;
+
+	public String getName() {
+		return "worst fit";
+	}
+
+	public void reset(ContigousMemoryAllocator memory) {
+		this.memory = memory;
+	}
+
+	public int place(int size) {
+		Partition hole = memory.largestHole();
+		if(hole == null || hole.getLength() < size) {
+			return -1;
+		}
+		return hole.getBase();
+	}
+}
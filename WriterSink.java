@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+//buffers event text in a char array and hands it to a Writer in large blocks
+public class WriterSink implements EventSink {
+	private Writer out;
+	private char[] buffer;
+	private int used; //chars of the buffer holding pending text
+
+	// constructor
+	public WriterSink(Writer out, int bufferSize) {
+		this.out = out;
+		this.buffer = new char[bufferSize];
+	}
+
+	//sink for standard output, closing it only flushes so System.out stays usable
+	public static WriterSink stdout() {
+		Writer writer = new OutputStreamWriter(System.out, Charset.defaultCharset()) {
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+		return new WriterSink(writer, 1 << 16);
+	}
+
+	//sink for any output stream
+	public static WriterSink of(OutputStream out) {
+		return new WriterSink(new OutputStreamWriter(out, Charset.defaultCharset()), 1 << 16);
+	}
+
+	public void write(CharSequence text) {
+		int length = text.length();
+		for (int i = 0; i < length; ) {
+			if (used == buffer.length) {
+				drain();
+			}
+			int n = Math.min(length - i, buffer.length - used);
+			if (text instanceof StringBuilder) {
+				((StringBuilder) text).getChars(i, i + n, buffer, used);
+			}
+			else if (text instanceof String) {
+				((String) text).getChars(i, i + n, buffer, used);
+			}
+			else {
+				for (int k = 0; k < n; k++) {
+					buffer[used + k] = text.charAt(i + k);
+				}
+			}
+			used += n;
+			i += n;
+		}
+	}
+
+	public void flush() {
+		drain();
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void close() {
+		flush();
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//hands the buffered chars to the writer
+	private void drain() {
+		try {
+			out.write(buffer, 0, used);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		used = 0;
+	}
+}
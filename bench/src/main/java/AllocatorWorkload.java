@@ -0,0 +1,75 @@
+import java.util.Random;
+
+import bench.Workload;
+
+//allocate/release churn on a MemoryManager, driven by bench.AllocatorBenchmark
+//lives in the default package next to the simulator classes, which packaged code cannot import
+public class AllocatorWorkload implements Workload {
+	private MemoryManager allocator;
+	private int[] sizeOf;
+	private int[] live; //ring buffer of live request indices, oldest first
+	private int liveHead;
+	private int liveCount;
+	private int cursor; //next request to allocate
+	private int processCount;
+
+	//uniform: 1 to memorySize / 64 KB, small: 1 to memorySize / 512 KB, bimodal: mostly small with one in ten large
+	//fragmentation is the fraction of the initial allocations released again, scattering holes across memory
+	public void setup(String policy, int memorySize, int processCount, String sizes, double fragmentation) {
+		Random rand = new Random(42);
+		this.processCount = processCount;
+		sizeOf = new int[processCount];
+		int max = Math.max(1, memorySize / 64);
+		for (int i = 0; i < processCount; i++) {
+			switch (sizes) {
+				case "small":
+					sizeOf[i] = rand.nextInt(Math.max(1, memorySize / 512)) + 1;
+					break;
+				case "bimodal":
+					sizeOf[i] = rand.nextInt(10) == 0 ? max / 2 + rand.nextInt(max / 2 + 1) : rand.nextInt(Math.max(1, max / 16)) + 1;
+					break;
+				default:
+					sizeOf[i] = rand.nextInt(max) + 1;
+			}
+		}
+		allocator = MemoryManager.forPolicy(policy, memorySize);
+		live = new int[processCount];
+		liveHead = 0;
+		liveCount = 0;
+		//fill memory, keeping at most half the requests live so ids are free again when the cursor wraps
+		cursor = 0;
+		while (liveCount < processCount / 2 && allocator.allocate(cursor, sizeOf[cursor]) != -1) {
+			live[(liveHead + liveCount++) % processCount] = cursor;
+			cursor++;
+		}
+		//punch holes by releasing a random share of what was allocated
+		int kept = 0;
+		for (int k = 0; k < liveCount; k++) {
+			int i = live[(liveHead + k) % processCount];
+			if (rand.nextDouble() < fragmentation) {
+				allocator.release(i);
+			}
+			else {
+				live[(liveHead + kept++) % processCount] = i;
+			}
+		}
+		liveCount = kept;
+	}
+
+	//releases the oldest live process and allocates the next request, so occupancy stays steady
+	public int allocateRelease() {
+		int released = 0;
+		if (liveCount > 0) {
+			released = allocator.release(live[liveHead]);
+			liveHead = (liveHead + 1) % processCount;
+			liveCount--;
+		}
+		int i = cursor;
+		cursor = (cursor + 1) % processCount;
+		int allocated = allocator.allocate(i, sizeOf[i]);
+		if (allocated != -1) {
+			live[(liveHead + liveCount++) % processCount] = i;
+		}
+		return released + allocated;
+	}
+}
@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+//measures allocate/release churn on the memory of each policy, as MemoryManager.forPolicy builds it: the contiguous
+//fit strategies, paged memory and the compact partition table
+//Throughput gives ops/us, SampleTime gives latency percentiles, and running with -prof gc
+//reports the allocation rate (gc.alloc.rate.norm is bytes/op)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AllocatorBenchmark {
+
+	@Param({"best", "worst", "next", "segregated", "buddy", "lifetime", "paged", "compact:best", "compact:worst", "compact:best:offheap"})
+	public String policy;
+
+	@Param({"1024", "1048576"})
+	public int memorySize;
+
+	@Param({"10000"})
+	public int processCount;
+
+	@Param({"uniform", "small", "bimodal"})
+	public String sizes;
+
+	@Param({"0.0", "0.5"})
+	public double fragmentation;
+
+	private Workload workload;
+
+	@Setup(Level.Iteration)
+	public void setup() throws ReflectiveOperationException {
+		//the simulator is in the default package, so the workload is looked up by name
+		workload = (Workload) Class.forName("AllocatorWorkload").getDeclaredConstructor().newInstance();
+		workload.setup(policy, memorySize, processCount, sizes, fragmentation);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+	public int allocateRelease() {
+		return workload.allocateRelease();
+	}
+}
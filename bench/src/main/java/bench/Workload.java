@@ -0,0 +1,11 @@
+package bench;
+
+//a benchmark workload implemented next to the simulator classes in the default package
+public interface Workload {
+
+	//builds the allocator and request stream for one measurement iteration
+	void setup(String policy, int memorySize, int processCount, String sizes, double fragmentation);
+
+	//one allocate/release operation
+	int allocateRelease();
+}